@@ -5,7 +5,7 @@
 
 package evaluations;
 
-public class Cosine implements HeuristicMetric{
+public class Cosine implements MonotoneHeuristicMetric{
 	
 	/**
 	 * Cosine metric: p/sqrt((n+p)*P)
@@ -17,4 +17,8 @@ public class Cosine implements HeuristicMetric{
 	public double evaluate(double[] args) {
 		return args[1]/Math.sqrt(args[0]*args[4]);
 	}
+	
+	public boolean is_monotone(double arg) {
+		return true;
+	}
 }
\ No newline at end of file
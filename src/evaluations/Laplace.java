@@ -5,7 +5,7 @@
 
 package evaluations;
 
-public class Laplace implements HeuristicMetric{
+public class Laplace implements MonotoneHeuristicMetric{
 	
 	/**
 	 * Laplace metric (p+1)/(n+p+2)
@@ -17,4 +17,8 @@ public class Laplace implements HeuristicMetric{
 	public double evaluate(double[] args) {
 		return (args[1]+1)/(args[0]+2);
 	}
+	
+	public boolean is_monotone(double arg) {
+		return true;
+	}
 }
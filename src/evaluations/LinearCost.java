@@ -5,7 +5,7 @@
 
 package evaluations;
 
-public class LinearCost implements HeuristicMetric{
+public class LinearCost implements MonotoneHeuristicMetric{
 	
 	/**
 	 * Linear Cost metric: c*p - (1-c)*n
@@ -17,4 +17,8 @@ public class LinearCost implements HeuristicMetric{
 	public double evaluate(double[] args) {		
 		return args[6]*args[1] - (1 - args[6])*args[2];
 	}
+	
+	public boolean is_monotone(double arg) {
+		return arg >= 0 && arg <= 1;
+	}
 }
@@ -5,7 +5,7 @@
 
 package evaluations;
 
-public class MEstimate implements HeuristicMetric{
+public class MEstimate implements MonotoneHeuristicMetric{
 	
 	/**
 	 * m-Estimate metric: (p + m*P/(P+N)) / (p+n+m)
@@ -17,4 +17,8 @@ public class MEstimate implements HeuristicMetric{
 	public double evaluate(double[] args) {
 		return (args[1] + args[6]*args[4]/args[3])/(args[0] + args[6]);
 	}
+	
+	public boolean is_monotone(double arg) {
+		return arg >= 0;
+	}
 }
\ No newline at end of file
@@ -5,7 +5,7 @@
 
 package evaluations;
 
-public class MRelativeLaplace implements HeuristicMetric{
+public class MRelativeLaplace implements MonotoneHeuristicMetric{
 	
 	/**
 	 * MRelativeLaplace metric: (p/P + m/2) / (p/P + n/N + m)
@@ -19,4 +19,8 @@ public class MRelativeLaplace implements HeuristicMetric{
 		
 		return (p_P_ratio + args[6]/2) / (p_P_ratio + args[2]/args[5] + args[6]);
 	}
+	
+	public boolean is_monotone(double arg) {
+		return arg >= 0;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package evaluations;
+
+/**
+ * A heuristic metric which never decreases when p increases or n decreases (the other arguments are fixed).
+ * </br>So for a rule with p <= p_max, evaluate(p = n+p = p_max, n = 0) is an upper bound of its heuristic value,
+ * which is used to skip candidates in the greedy rule search, see SearchContext.
+ */
+public interface MonotoneHeuristicMetric extends HeuristicMetric {
+	
+	/**
+	 * @param arg the parameter of the metric, args[6]
+	 * @return true if the metric is monotone with the parameter
+	 */
+	public boolean is_monotone(double arg);
+}
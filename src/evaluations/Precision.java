@@ -5,7 +5,7 @@
 
 package evaluations;
 
-public class Precision implements HeuristicMetric{
+public class Precision implements MonotoneHeuristicMetric{
 	
 	/**
 	 * Precision metric p/(n+p)
@@ -17,4 +17,8 @@ public class Precision implements HeuristicMetric{
 	public double evaluate(double[] args) {
 		return args[1]/args[0];
 	}
+	
+	public boolean is_monotone(double arg) {
+		return true;
+	}
 }
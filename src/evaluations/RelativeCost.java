@@ -5,7 +5,7 @@
 
 package evaluations;
 
-public class RelativeCost implements HeuristicMetric{
+public class RelativeCost implements MonotoneHeuristicMetric{
 	
 	/**
 	 * Relative Cost metric: cr*(p/P) - (1-cr)*(n/N)
@@ -17,4 +17,8 @@ public class RelativeCost implements HeuristicMetric{
 	public double evaluate(double[] args) {
 		return args[6]*args[1]/args[4] - (1 - args[6])*args[2]/args[5];
 	}
+	
+	public boolean is_monotone(double arg) {
+		return arg >= 0 && arg <= 1;
+	}
 }
\ No newline at end of file
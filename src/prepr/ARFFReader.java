@@ -169,6 +169,8 @@ public class ARFFReader extends DataReader {
 			}
 		}
 		
+		this.init_row_encoding();
+		
 		/**
 		 * 3. Parse data section, count frequency of distinct values of nominal attributes
 		 * and cache all values of numeric attributes
@@ -191,12 +193,18 @@ public class ARFFReader extends DataReader {
 	        	attr = this.attributes.get(attr_index);
 	        	
 	        	if(attr.type == Attribute.DATA_TYPE.NOMINAL){
-	        		if(Attribute.NULL_SYMBOLS.contains(value)) continue;	// ignore null values
-	        		attr.distinct_values.get(value).frequency++;
+	        		if(Attribute.NULL_SYMBOLS.contains(value)){	// ignore null values
+	        			if(this.encode_rows) this.encoded_rows.add(-1);
+	        			continue;
+	        		}
+	        		Selector s = attr.distinct_values.get(value);
+	        		s.frequency++;
+	        		if(this.encode_rows) this.encoded_rows.add(this.encode_selector(s));
 	        	}else{
 	        		// numeric attribute case, record all values including null value (represented as NaN)
 	        		if(Attribute.NULL_SYMBOLS.contains(value)) numeric_attr_values[attr_index].add(Double.NaN);
 	        		else numeric_attr_values[attr_index].add(Double.parseDouble(value));
+	        		if(this.encode_rows) this.encoded_rows.add(-1);	// selector is known after discretization
 	        	}
 	        }
 	        // record classID of the current example
@@ -217,6 +225,7 @@ public class ARFFReader extends DataReader {
 															    		value_to_classID.size(),
 															    		classId_of_instances.toArray());
 	    System.out.println("Discretization time: " + discretization_time);
+	    if(this.encode_rows) this.encoded_numeric_values = numeric_attr_values;
 	    
 	    /**
 	     * 5. Prepare selector structures
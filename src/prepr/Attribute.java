@@ -78,6 +78,34 @@ public class Attribute{
 		}
 	}
 	
+	/**
+	 * Return the corresponding selector of a parsed numeric value, no string parsing is needed
+	 * </br>A null can be returned in cases:
+	 * </br> 1. The value is NaN (null presentation)
+	 * </br> 2. Or the attribute is not numeric
+	 * @param value
+	 * @return
+	 */
+	public Selector getSelector(double value){
+		if(this.type != DATA_TYPE.NUMERIC || Double.isNaN(value)) return null;
+		if(this.discretized_values == null){
+			// Treat as a nominal attribute because it cannot be discretized, keys are string presentation of double values
+			return this.distinct_values.get(Double.toString(value));
+		}
+		return this.distinct_values.get(str_intervals[this.find_right_index(this.discretized_values, value)]);
+	}
+
+	/**
+	 * @return the selector of each interval of a discretized numeric attribute, an element is null if its interval has no selector,
+	 * null if the attribute is not discretized
+	 */
+	Selector[] getIntervalSelectors(){
+		if(this.type != DATA_TYPE.NUMERIC || this.discretized_values == null || this.str_intervals == null) return null;
+		Selector[] selectors = new Selector[this.str_intervals.length];
+		for(int i=0; i<selectors.length; i++) selectors[i] = this.distinct_values.get(this.str_intervals[i]);
+		return selectors;
+	}
+	
 	public String getDiscretizedValue(String value){
 		switch(this.type){
 			case NOMINAL:
@@ -110,6 +138,19 @@ public class Attribute{
 		this.distinct_values = this.build_distinct_values(discretized_values, attr_values, this.str_intervals);
 	}
 	
+	/**
+	 * Restore a numeric attribute from stored information, e.g. a snapshot, without discretizing again
+	 * @param discretized_values cut points, null if the attribute could not be discretized
+	 * @param distinct_values selectors of the attribute, keyed by their distinct values
+	 */
+	public void restore_discretized_values(double[] discretized_values, Map<String, Selector> distinct_values){
+		this.distinct_values = distinct_values;
+		if(this.type == DATA_TYPE.NOMINAL || discretized_values == null) return;
+		
+		this.discretized_values = discretized_values;
+		this.str_intervals = this.build_str_intervals(discretized_values);
+	}
+	
 	private Map<String, Selector> build_distinct_values_as_nominal_one(double[] attr_values){
 		Map<String, Selector> distinct_values = new HashMap<String, Selector>();
 		
@@ -168,6 +209,13 @@ public class Attribute{
 	}
 	
 	private int find_right_index(double[] discretized_values, double value){
+		return find_interval(discretized_values, value);
+	}
+	
+	/**
+	 * @return the index of the interval of 'value' in the cut points 'discretized_values'
+	 */
+	static int find_interval(double[] discretized_values, double value){
 		int low_index=0, middle, high_index=discretized_values.length-1;
 		
 		while((high_index-low_index) > 1){
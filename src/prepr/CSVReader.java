@@ -132,6 +132,8 @@ public class CSVReader extends DataReader {
 		/**
 		 * 1. Parse data section, construct the list of ATOM selectors (corresponding distinct values) groups based on attributes
 		 */
+		this.init_row_encoding();
+		
 		String line;
 		String[] item_list;
 		while ((line = input.readLine()) != null) {
@@ -147,16 +149,21 @@ public class CSVReader extends DataReader {
 	        Attribute attr;
 	        for(String value : item_list){
 	        	attr_index++;
-	        	if(Attribute.NULL_SYMBOLS.contains(value)) continue;
+	        	if(Attribute.NULL_SYMBOLS.contains(value)){
+	        		if(this.encode_rows) this.encoded_rows.add(-1);
+	        		continue;
+	        	}
 	        	
 	        	attr = this.attributes.get(attr_index);
 	        	Selector s = attr.distinct_values.get(value);
 	        	
 	        	if(s == null){
-	        		attr.distinct_values.put(value, new Selector(attr_index, attr.name, value, 1));
+	        		s = new Selector(attr_index, attr.name, value, 1);
+	        		attr.distinct_values.put(value, s);
 	        	}else{
 	        		s.frequency++;
 	        	}
+	        	if(this.encode_rows) this.encoded_rows.add(this.encode_selector(s));
 	        }
 		}
 	    input.close();
@@ -229,6 +236,8 @@ public class CSVReader extends DataReader {
 			}
 		}
 		
+		this.init_row_encoding();
+		
 		/**
 		 * 3. Parse data section, count frequency of distinct values of nominal attributes
 		 * and cache all values of numeric attributes
@@ -251,17 +260,23 @@ public class CSVReader extends DataReader {
 	        	attr = this.attributes.get(attr_index);
 	        	
 	        	if(attr.type == Attribute.DATA_TYPE.NOMINAL){
-	        		if(Attribute.NULL_SYMBOLS.contains(value)) continue;	// ignore null values
+	        		if(Attribute.NULL_SYMBOLS.contains(value)){	// ignore null values
+	        			if(this.encode_rows) this.encoded_rows.add(-1);
+	        			continue;
+	        		}
 		        	Selector s = attr.distinct_values.get(value);
 		        	if(s == null){
-		        		attr.distinct_values.put(value, new Selector(attr_index, attr.name, value, 1));
+		        		s = new Selector(attr_index, attr.name, value, 1);
+		        		attr.distinct_values.put(value, s);
 		        	}else{
 		        		s.frequency++;
 		        	}
+		        	if(this.encode_rows) this.encoded_rows.add(this.encode_selector(s));
 	        	}else{
 	        		// numeric attribute case, record all values including null value (represented as NaN)
 	        		if(Attribute.NULL_SYMBOLS.contains(value)) numeric_attr_values[attr_index].add(Double.NaN);
 	        		else numeric_attr_values[attr_index].add(Double.parseDouble(value));
+	        		if(this.encode_rows) this.encoded_rows.add(-1);	// selector is known after discretization
 	        	}
 	        }
 	        // record classID of the current example
@@ -287,6 +302,7 @@ public class CSVReader extends DataReader {
 															    		value_to_classID.size(),
 															    		classId_of_instances.toArray());
 	    System.out.println("Discretization time: " + discretization_time);
+	    if(this.encode_rows) this.encoded_numeric_values = numeric_attr_values;
 	    
 	    /**
 	     * 5. Prepare selector structures
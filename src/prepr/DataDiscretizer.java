@@ -15,7 +15,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import rl.IntHolder;
+import rl.CancellationToken;
+import rl.ChunkScheduler;
+import rl.LearnerExecutor;
+import rl.LearningCancelledException;
 import discretizer.Discretizer;
 import discretizer.Discretizer.DISCRETIZER;
 import discretizer.FUSINTERDiscretizer;
@@ -185,9 +188,11 @@ public class DataDiscretizer{
 		long start = System.currentTimeMillis();
 		
 		// Threads
-        IntHolder globalIndex = new IntHolder(0);
 		int thread_count = Math.max(1, Runtime.getRuntime().availableProcessors()/2);
-		Thread[] threads = new Thread[thread_count];
+		ChunkScheduler scheduler = new ChunkScheduler(this.attributes.size(), thread_count);
+		CancellationToken token = new CancellationToken();	// cancelled if the calling thread is interrupted
+		scheduler.setCancellationToken(token);
+		Runnable[] tasks = new Runnable[thread_count];
 		
 		for(int i=0; i<thread_count; i++){
 			Discretizer discretizer;
@@ -198,19 +203,14 @@ public class DataDiscretizer{
 				default:
 					discretizer = new FUSINTERDiscretizer(class_count, classId_of_instances);
 			}
-			threads[i] = new DiscretizationThread(discretizer,
+			tasks[i] = new DiscretizationThread(discretizer,
 													this.attributes,
 													numeric_attr_values,
-													globalIndex, i);
-			
-			threads[i].start();
+													scheduler, i);
 		}
 		
-		try {
-			for(int i=0; i<thread_count; i++) threads[i].join();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+		LearnerExecutor.invoke_all(LearnerExecutor.shared(), tasks, token);
+		if(!scheduler.is_complete()) throw new LearningCancelledException(token, "discretization");
 		
 		return System.currentTimeMillis() - start;
 	}
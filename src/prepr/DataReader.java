@@ -9,12 +9,16 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.DataFormatException;
 
-import rl.IntHolder;
+import rl.CancellationToken;
+import rl.ChunkScheduler;
+import rl.LearnerExecutor;
+import rl.LearningCancelledException;
 import discretizer.Discretizer;
 import discretizer.Discretizer.DISCRETIZER;
 import discretizer.FUSINTERDiscretizer;
@@ -69,7 +73,20 @@ public abstract class DataReader {
 	protected int attr_count, predict_attr_count, target_attr_count, numeric_attr_count=0;
 	protected int distinct_value_count;
 	protected int selector_count, predict_selector_count, target_selector_count;
+
+	/**
+	 * Single-pass support: when enabled, each parsed row is also kept in memory in a compact encoded form,
+	 * so that records of selector IDs can be built by 'build_selectorID_records' without reading the data source again.
+	 * </br>Row-major codes, 'attr_count' codes per row. A code is an index in 'encoded_selectors',
+	 * or -1 for a null value or a value of a numeric attribute (kept in 'encoded_numeric_values').
+	 */
+	protected boolean encode_rows = false;
+	protected IntegerArray encoded_rows = null;
+	protected List<Selector> encoded_selectors = null;
+	protected DoubleArray[] encoded_numeric_values = null;
 	
+	protected CancellationToken cancellation_token = null;
+
 	public DATA_FORMATS getDataFormat(){
 		return this.data_format;
 	}
@@ -127,6 +144,15 @@ public abstract class DataReader {
 	}
 	
 	
+	/**
+	 * Set the token which stops the discretization of numeric attributes, see CancellationToken.
+	 * A cancelled discretization always throws, there is no partial result of preprocessing.
+	 * @param token null if only interrupts stop the discretization
+	 */
+	public void setCancellationToken(CancellationToken token){
+		this.cancellation_token = token;
+	}
+	
 	public abstract void set_attribute_datatypes(String[] datatypes);
 	
 	/**
@@ -200,7 +226,90 @@ public abstract class DataReader {
 	public void set_delimiter(String delimiter){
 		this.delimiter = delimiter;
 	}
-	
+
+	/**
+	 * Keep the parsed rows in memory in an encoded form while fetching information,
+	 * then call 'build_selectorID_records' to get records of selector IDs without a second read of the data source.
+	 * </br>Default value is false
+	 * @param encode_rows
+	 */
+	public void set_encode_rows(boolean encode_rows){
+		this.encode_rows = encode_rows;
+	}
+
+	/**
+	 * Prepare the in-memory structures for encoding rows, called before parsing the data section
+	 */
+	protected void init_row_encoding(){
+		if(!this.encode_rows) return;
+		this.encoded_rows = new IntegerArray(1024*this.attr_count);
+		this.encoded_selectors = new ArrayList<Selector>();
+	}
+
+	/**
+	 * Get the code of an atom selector met while parsing, the selector is registered at the first time it is met
+	 * </br> 'distinctValueID' is used temporarily as the code, it is re-assigned later in 'prepare_selectors'
+	 * @param s
+	 * @return code of the selector
+	 */
+	protected final int encode_selector(Selector s){
+		if(s.distinctValueID == Selector.INVALID_ID){
+			s.distinctValueID = this.encoded_selectors.size();
+			this.encoded_selectors.add(s);
+		}
+		return s.distinctValueID;
+	}
+
+	/**
+	 * Build records of selector IDs from the rows encoded while fetching information.
+	 * </br> Require 'set_encode_rows(true)' before 'fetch_info', and disjunction selectors are NOT supported.
+	 * </br> Each record is sorted in ascending order of selector IDs, records are in the order of rows in the data source.
+	 * The encoded rows are released after the call.
+	 * @return records of selector IDs, <b>null</b> if rows were not encoded
+	 */
+	public int[][] build_selectorID_records(){
+		if(this.encoded_rows == null) return null;
+
+		// code -> selector ID, infrequent selectors remain INVALID_ID
+		int[] code_to_selectorID = new int[this.encoded_selectors.size()];
+		for(int i=0; i<code_to_selectorID.length; i++){
+			code_to_selectorID[i] = this.encoded_selectors.get(i).selectorID;
+		}
+
+		int[][] records = new int[this.row_count][];
+		int[] id_buffer = new int[this.attr_count];
+		int code_index = 0, count, code, id;
+		Selector s;
+
+		for(int row=0; row<this.row_count; row++){
+			count = 0;
+			for(int attr_index=0; attr_index<this.attr_count; attr_index++, code_index++){
+				code = this.encoded_rows.get(code_index);
+				if(code != -1){
+					id = code_to_selectorID[code];
+				}else if(this.encoded_numeric_values != null && this.encoded_numeric_values[attr_index] != null){
+					s = this.attributes.get(attr_index).getSelector(this.encoded_numeric_values[attr_index].get(row));
+					if(s == null) continue;
+					id = s.selectorID;
+				}else continue;	// null value
+
+				if(id == Selector.INVALID_ID) continue;
+				id_buffer[count] = id;
+				count++;
+			}
+			int[] id_record = new int[count];
+			System.arraycopy(id_buffer, 0, id_record, 0, count);
+			Arrays.sort(id_record);
+			records[row] = id_record;
+		}
+
+		this.encoded_rows = null;
+		this.encoded_selectors = null;
+		this.encoded_numeric_values = null;
+
+		return records;
+	}
+
 	protected void prepare_selectors(){
 		/**
 	     * 1. Construct the selector list 'constructing_selectors' which includes:
@@ -476,9 +585,11 @@ public abstract class DataReader {
 		long start = System.currentTimeMillis();
 		
 		// Threads
-        IntHolder globalIndex = new IntHolder(0);
 		int thread_count = Math.max(1, Runtime.getRuntime().availableProcessors()/2);
-		Thread[] threads = new Thread[thread_count];
+		ChunkScheduler scheduler = new ChunkScheduler(this.attributes.size(), thread_count);
+		CancellationToken token = this.cancellation_token != null ? this.cancellation_token : new CancellationToken();
+		scheduler.setCancellationToken(token);
+		Runnable[] tasks = new Runnable[thread_count];
 		
 		for(int i=0; i<thread_count; i++){
 			Discretizer discretizer;
@@ -489,19 +600,14 @@ public abstract class DataReader {
 				default:
 					discretizer = new FUSINTERDiscretizer(class_count, classId_of_instances);
 			}
-			threads[i] = new DiscretizationThread(discretizer,
+			tasks[i] = new DiscretizationThread(discretizer,
 													this.attributes,
 													numeric_attr_values,
-													globalIndex, i);
-			
-			threads[i].start();
+													scheduler, i);
 		}
 		
-		try {
-			for(int i=0; i<thread_count; i++) threads[i].join();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+		LearnerExecutor.invoke_all(LearnerExecutor.shared(), tasks, token);
+		if(!scheduler.is_complete()) throw new LearningCancelledException(token, "discretization");
 		
 		return System.currentTimeMillis() - start;
 	}
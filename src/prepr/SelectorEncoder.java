@@ -0,0 +1,253 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package prepr;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import prepr.Attribute.DATA_TYPE;
+
+/**
+ * Precompiled conversion of records of values to selector IDs, the same IDs as Attribute.getSelector but without its maps:
+ * </br> + a nominal attribute has a perfect hash table of its values: the seed of the hash is chosen so that all values
+ * are in distinct slots, a lookup is one hash of the value and one comparison (values with equal hash codes keep the map of the attribute),
+ * </br> + a discretized numeric attribute maps the index of the interval of a value in the cut points directly to a selector ID,
+ * </br> + a numeric attribute which is not discretized keeps its values sorted for a binary search.
+ * </br>'encode_sorted' emits the IDs increasingly without a sort: through a bitmap of the selector IDs if it has at most as many
+ * words as there are attributes, otherwise by insertion.
+ * </br>The encoder is a snapshot of the attributes, built after their selector IDs are assigned. Calls from many threads are safe.
+ */
+public class SelectorEncoder {
+	private static final int NOMINAL = 0, INTERVALS = 1, NUMERIC_VALUES = 2, FALLBACK = 3;
+	private static final int MAX_SEED_TRIALS = 32;
+	private static final int MAX_TABLE_FACTOR = 16;
+
+	private final List<Attribute> source;
+	private final int[] kinds;				// the kind of the table of each attribute
+	private final String[][] keys;			// NOMINAL: values in the slots of the hash table, null for an empty slot
+	private final int[][] key_IDs;			// NOMINAL: selector IDs of the slots; NUMERIC_VALUES: of the sorted values
+	private final int[] seeds;				// NOMINAL: seeds of the hash
+	private final double[][] cut_points;	// INTERVALS: discretized values; NUMERIC_VALUES: increasingly sorted values
+	private final int[][] interval_IDs;		// INTERVALS: selector ID of each interval
+	private final int word_count;			// words of the bitmap of the selector IDs
+	private final boolean bitmap_emission;
+
+	private final ThreadLocal<long[]> bitmaps = new ThreadLocal<long[]>(){
+		@Override
+		protected long[] initialValue(){
+			return new long[word_count];
+		}
+	};
+
+	/**
+	 * @param attributes attributes with the selector IDs assigned
+	 */
+	public SelectorEncoder(List<Attribute> attributes){
+		int attr_count = attributes.size();
+		this.source = attributes;
+		this.kinds = new int[attr_count];
+		this.keys = new String[attr_count][];
+		this.key_IDs = new int[attr_count][];
+		this.seeds = new int[attr_count];
+		this.cut_points = new double[attr_count][];
+		this.interval_IDs = new int[attr_count][];
+
+		int max_ID = -1;
+		for(int i=0; i<attr_count; i++){
+			Attribute attr = attributes.get(i);
+			if(attr.distinct_values == null){
+				this.kinds[i] = FALLBACK;
+			}else if(attr.type == DATA_TYPE.NOMINAL){
+				this.kinds[i] = this.build_hash_table(i, attr.distinct_values) ? NOMINAL : FALLBACK;
+			}else if(attr.discretized_values != null){
+				this.kinds[i] = INTERVALS;
+				this.cut_points[i] = attr.discretized_values;
+				Selector[] selectors = attr.getIntervalSelectors();
+				this.interval_IDs[i] = new int[selectors.length];
+				for(int j=0; j<selectors.length; j++) this.interval_IDs[i][j] = selector_ID(selectors[j]);
+			}else{
+				this.kinds[i] = this.build_sorted_values(i, attr.distinct_values) ? NUMERIC_VALUES : FALLBACK;
+			}
+
+			if(attr.distinct_values != null){
+				for(Selector s : attr.distinct_values.values()) max_ID = Math.max(max_ID, s.selectorID);
+			}
+		}
+
+		this.word_count = (max_ID >> 6) + 1;
+		this.bitmap_emission = this.word_count <= attr_count;
+	}
+
+	private static int selector_ID(Selector s){
+		return (s == null) ? Selector.INVALID_ID : s.selectorID;
+	}
+
+	/**
+	 * Find a seed which puts all values in distinct slots, the table is doubled after MAX_SEED_TRIALS seeds
+	 * @return false if no table up to MAX_TABLE_FACTOR slots per value is perfect, e.g. two values have the same String.hashCode
+	 */
+	private boolean build_hash_table(int attr_index, Map<String, Selector> distinct_values){
+		int size = 2;
+		while(size < distinct_values.size()*2) size <<= 1;
+		while(size <= Math.max(64, distinct_values.size()*MAX_TABLE_FACTOR)){
+			for(int seed=0; seed<MAX_SEED_TRIALS; seed++){
+				String[] keys = new String[size];
+				int[] key_IDs = new int[size];
+				boolean perfect = true;
+				for(Map.Entry<String, Selector> entry : distinct_values.entrySet()){
+					int slot = slot(entry.getKey(), seed, size-1);
+					if(keys[slot] != null){
+						perfect = false;
+						break;
+					}
+					keys[slot] = entry.getKey();
+					key_IDs[slot] = selector_ID(entry.getValue());
+				}
+				if(perfect){
+					this.keys[attr_index] = keys;
+					this.key_IDs[attr_index] = key_IDs;
+					this.seeds[attr_index] = seed;
+					return true;
+				}
+			}
+			size <<= 1;
+		}
+		return false;
+	}
+
+	private static int slot(String value, int seed, int mask){
+		int hash = (value.hashCode() ^ (seed * 0x9E3779B9)) * 0x85EBCA6B;
+		return (hash ^ (hash >>> 15)) & mask;
+	}
+
+	/**
+	 * The keys of a numeric attribute which is not discretized are the string presentations of the double values
+	 * @return false if a key is not a double value
+	 */
+	private boolean build_sorted_values(int attr_index, Map<String, Selector> distinct_values){
+		double[] values = new double[distinct_values.size()];
+		Selector[] selectors = new Selector[values.length];
+		int count = 0;
+		for(Map.Entry<String, Selector> entry : distinct_values.entrySet()){
+			try{
+				values[count] = Double.parseDouble(entry.getKey());
+			}catch(NumberFormatException e){
+				return false;
+			}
+			selectors[count] = entry.getValue();
+			count++;
+		}
+
+		Integer[] order = new Integer[count];
+		for(int i=0; i<count; i++) order[i] = i;
+		final double[] unsorted_values = values;
+		Arrays.sort(order, new Comparator<Integer>(){
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(unsorted_values[a], unsorted_values[b]);
+			}
+		});
+
+		this.cut_points[attr_index] = new double[count];
+		this.key_IDs[attr_index] = new int[count];
+		for(int i=0; i<count; i++){
+			this.cut_points[attr_index][i] = values[order[i]];
+			this.key_IDs[attr_index][i] = selector_ID(selectors[order[i]]);
+		}
+		return true;
+	}
+
+	/**
+	 * @param attributes
+	 * @return true if the encoder is built from 'attributes'
+	 */
+	public boolean is_compiled_from(List<Attribute> attributes){
+		return this.source == attributes;
+	}
+
+	/**
+	 * The same as Attribute.getSelector(value).selectorID
+	 * @param attr_index
+	 * @param value
+	 * @return the selector ID of the value, Selector.INVALID_ID if the value is a null presentation or unknown
+	 */
+	public int selector_ID(int attr_index, String value){
+		switch(this.kinds[attr_index]){
+			case NOMINAL:
+				if(value == null) return Selector.INVALID_ID;
+				String[] keys = this.keys[attr_index];
+				int slot = slot(value, this.seeds[attr_index], keys.length-1);
+				return value.equals(keys[slot]) ? this.key_IDs[attr_index][slot] : Selector.INVALID_ID;
+			case INTERVALS:
+				if(value.length() < 4 && Attribute.NULL_SYMBOLS.contains(value)) return Selector.INVALID_ID;
+				return this.interval_IDs[attr_index][Attribute.find_interval(this.cut_points[attr_index], Double.parseDouble(value))];
+			case NUMERIC_VALUES:
+				if(value.length() < 4 && Attribute.NULL_SYMBOLS.contains(value)) return Selector.INVALID_ID;
+				int index = Arrays.binarySearch(this.cut_points[attr_index], Double.parseDouble(value));
+				return index < 0 ? Selector.INVALID_ID : this.key_IDs[attr_index][index];
+			default:
+				return selector_ID(this.source.get(attr_index).getSelector(value));
+		}
+	}
+
+	/**
+	 * Write the selector IDs of the record of values into 'id_buffer', in the order of the attributes
+	 * @param value_record
+	 * @param id_buffer output, at least as long as 'value_record'
+	 * @return the number of selector IDs written
+	 */
+	public int encode(String[] value_record, int[] id_buffer){
+		int count = 0, id;
+		for(int i=0; i<value_record.length; i++){
+			id = this.selector_ID(i, value_record[i]);
+			if(id != Selector.INVALID_ID) id_buffer[count++] = id;
+		}
+		return count;
+	}
+
+	/**
+	 * Write the selector IDs of the record of values into 'id_buffer', increasingly sorted
+	 * @param value_record
+	 * @param id_buffer output, at least as long as 'value_record'
+	 * @return the number of selector IDs written
+	 */
+	public int encode_sorted(String[] value_record, int[] id_buffer){
+		if(!this.bitmap_emission){
+			// insert each ID into the sorted prefix of the buffer
+			int count = 0, id, position;
+			for(int i=0; i<value_record.length; i++){
+				id = this.selector_ID(i, value_record[i]);
+				if(id == Selector.INVALID_ID) continue;
+				for(position=count; position>0 && id_buffer[position-1] > id; position--) id_buffer[position] = id_buffer[position-1];
+				id_buffer[position] = id;
+				count++;
+			}
+			return count;
+		}
+
+		long[] bitmap = this.bitmaps.get();
+		int id;
+		for(int i=0; i<value_record.length; i++){
+			id = this.selector_ID(i, value_record[i]);
+			if(id != Selector.INVALID_ID) bitmap[id >> 6] |= 1L << id;
+		}
+
+		// the set bits in the increasing order, the bitmap is cleared for the next call
+		int count = 0;
+		for(int w=0; w<this.word_count; w++){
+			long word = bitmap[w];
+			if(word == 0) continue;
+			bitmap[w] = 0;
+			do{
+				id_buffer[count++] = (w << 6) | Long.numberOfTrailingZeros(word);
+				word &= word-1;
+			}while(word != 0);
+		}
+		return count;
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+/**
+ * Predicts the classes of a batch of examples, given as records of values or as records of selectorIDs,
+ * the examples are dispensed by a ChunkScheduler shared with the other threads of the batch.
+ */
+public class BatchPredictionThread implements Runnable{
+	private RuleLearner learner;
+	private String[][] value_records;
+	private int[][] id_records;
+	private boolean has_class;
+	private int[] predicted_classIDs;
+	private ChunkScheduler scheduler;
+	
+	/**
+	 * @param learner the learned model, only read by the reentrant prediction methods
+	 * @param value_records records of values, null if 'id_records' is given
+	 * @param id_records records of selectorIDs in ascending order, null if 'value_records' is given
+	 * @param has_class whether the target class is at the last position of the records of selectorIDs
+	 * @param predicted_classIDs output, the predicted class ID of each record
+	 * @param scheduler
+	 */
+	public BatchPredictionThread(RuleLearner learner,
+								String[][] value_records,
+								int[][] id_records,
+								boolean has_class,
+								int[] predicted_classIDs,
+								ChunkScheduler scheduler){
+		this.learner = learner;
+		this.value_records = value_records;
+		this.id_records = id_records;
+		this.has_class = has_class;
+		this.predicted_classIDs = predicted_classIDs;
+		this.scheduler = scheduler;
+	}
+	
+	public void run(){
+		ChunkScheduler.Range range = new ChunkScheduler.Range();
+		if(this.value_records != null){
+			int[] id_buffer = new int[1];
+			while (this.scheduler.next(range)){
+				for(int index=range.start; index<range.end; index++){
+					String[] value_record = this.value_records[index];
+					if(id_buffer.length < value_record.length) id_buffer = new int[value_record.length];
+					this.predicted_classIDs[index] = this.learner.predict_record(value_record,
+															this.learner.has_class(value_record), id_buffer).classID;
+				}
+			}
+		}else{
+			while (this.scheduler.next(range)){
+				for(int index=range.start; index<range.end; index++){
+					int[] id_record = this.id_records[index];
+					this.predicted_classIDs[index] = this.learner.predict_example(id_record, id_record.length, this.has_class).classID;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+/**
+ * Cooperative cancellation and wall-clock budget of learning runs.
+ * </br>Workers do not need to check the token themselves: a ChunkScheduler given the token stops dispensing indices
+ * once the token is cancelled or its deadline is passed, so search, filter and discretization workers stop after
+ * the chunk at hand (chunks last about ChunkScheduler.DEFAULT_TARGET_CHUNK_NANOS).
+ * </br>The policy tells the learner what to do with a cancelled run:
+ * </br> + PARTIAL: build a usable RuleManager from the rules found so far,
+ * </br> + FAIL_FAST: throw a LearningCancelledException.
+ * </br>A token can be shared by several runs, e.g. to bound a whole cross validation.
+ */
+public class CancellationToken {
+	public static enum POLICY_TYPES {PARTIAL, FAIL_FAST};
+	
+	private final POLICY_TYPES policy;
+	private volatile boolean cancelled = false;
+	private volatile String reason = null;
+	private volatile boolean has_deadline = false;
+	private volatile long deadline_nanos = 0;
+	
+	/**
+	 * A token with the FAIL_FAST policy and no deadline
+	 */
+	public CancellationToken(){
+		this(POLICY_TYPES.FAIL_FAST);
+	}
+	
+	public CancellationToken(POLICY_TYPES policy){
+		this.policy = policy;
+	}
+	
+	/**
+	 * @param policy
+	 * @param budget_millis the token is cancelled 'budget_millis' milliseconds from now
+	 */
+	public CancellationToken(POLICY_TYPES policy, long budget_millis){
+		this(policy);
+		this.setBudget(budget_millis);
+	}
+	
+	/**
+	 * Set the deadline to 'budget_millis' milliseconds from now
+	 * @param budget_millis
+	 */
+	public void setBudget(long budget_millis){
+		this.deadline_nanos = System.nanoTime() + budget_millis * 1000000L;
+		this.has_deadline = true;
+	}
+	
+	public POLICY_TYPES getPolicy(){
+		return this.policy;
+	}
+	
+	/**
+	 * @return why the token is cancelled, null if it is not
+	 */
+	public String getReason(){
+		return this.reason;
+	}
+	
+	/**
+	 * Cancel the runs using the token, from any thread
+	 */
+	public void cancel(){
+		this.cancel("cancelled");
+	}
+	
+	void cancel(String reason){
+		if(this.reason == null) this.reason = reason;
+		this.cancelled = true;
+	}
+	
+	public boolean is_cancelled(){
+		return this.is_cancelled(System.nanoTime());
+	}
+	
+	/**
+	 * @param now_nanos the current value of System.nanoTime()
+	 * @return true if the token is cancelled or its deadline is passed
+	 */
+	public boolean is_cancelled(long now_nanos){
+		if(this.cancelled) return true;
+		if(this.has_deadline && now_nanos - this.deadline_nanos >= 0){
+			this.cancel("deadline passed");
+			return true;
+		}
+		return false;
+	}
+}
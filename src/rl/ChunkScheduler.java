@@ -0,0 +1,150 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free dispenser of the index range [from, to) to worker threads, in chunks of consecutive indices.
+ * </br>A worker takes the next chunk by one CAS on a shared counter, instead of one monitor acquisition per index.
+ * The chunk size adapts to the measured processing time per index:
+ * </br> + chunks last about 'target_chunk_nanos', so cheap items are dispensed in large chunks and expensive items one by one,
+ * </br> + chunks are at most remaining/(2*worker_count) (guided scheduling), so they shrink towards the end of the range and
+ * the workers finish at about the same time.
+ * </br>Usage in a worker, 'range' is owned by the worker:
+ * </br>	ChunkScheduler.Range range = new ChunkScheduler.Range();
+ * </br>	while(scheduler.next(range)){
+ * </br>		for(int index=range.start; index<range.end; index++){ ... }
+ * </br>	}
+ */
+public class ChunkScheduler {
+	/**
+	 * Default processing time of one chunk, in nanoseconds
+	 */
+	public static final long DEFAULT_TARGET_CHUNK_NANOS = 500000;
+
+	private final int from;
+	private final int to;
+	private final int worker_count;
+	private final long target_chunk_nanos;
+
+	private final AtomicInteger next_index;
+	private final LongAdder processed_nanos = new LongAdder();
+	private final LongAdder processed_count = new LongAdder();
+	private CancellationToken cancellation_token = null;
+
+	/**
+	 * A chunk [start, end) of indices taken by a worker
+	 */
+	public static class Range {
+		public int start = 0;
+		public int end = 0;
+		private long taken_time;
+	}
+
+	/**
+	 * @param from the first index to dispense
+	 * @param to the index after the last one to dispense
+	 * @param worker_count the number of workers sharing the scheduler
+	 * @param target_chunk_nanos the desired processing time of one chunk, in nanoseconds
+	 */
+	public ChunkScheduler(int from, int to, int worker_count, long target_chunk_nanos){
+		this.from = from;
+		this.to = Math.max(from, to);
+		this.next_index = new AtomicInteger(from);
+		this.worker_count = Math.max(1, worker_count);
+		this.target_chunk_nanos = Math.max(1, target_chunk_nanos);
+	}
+	
+	/**
+	 * @param size the number of indices to dispense, [0, size)
+	 * @param worker_count the number of workers sharing the scheduler
+	 * @param target_chunk_nanos the desired processing time of one chunk, in nanoseconds
+	 */
+	public ChunkScheduler(int size, int worker_count, long target_chunk_nanos){
+		this(0, size, worker_count, target_chunk_nanos);
+	}
+
+	public ChunkScheduler(int size, int worker_count){
+		this(size, worker_count, DEFAULT_TARGET_CHUNK_NANOS);
+	}
+
+	/**
+	 * Stop dispensing indices once 'token' is cancelled, to be set before the workers start
+	 * @param token null for no cancellation
+	 */
+	public void setCancellationToken(CancellationToken token){
+		this.cancellation_token = token;
+	}
+
+	/**
+	 * @return true if all indices are dispensed and reported, false if the workers stopped early because of cancellation
+	 */
+	public boolean is_complete(){
+		return this.processed_count.sum() == this.size();
+	}
+
+	public int size(){
+		return this.to - this.from;
+	}
+
+	/**
+	 * @return the number of indices whose processing is reported, i.e. of the chunks returned before the last 'next' of each worker
+	 */
+	public long completed(){
+		return this.processed_count.sum();
+	}
+
+	/**
+	 * Report the processing time of the previous chunk of 'range' and take the next chunk into 'range'.
+	 * @param range output parameter, the next chunk
+	 * @return false if all indices are dispensed or the cancellation token is cancelled
+	 */
+	public boolean next(Range range){
+		long now = System.nanoTime();
+		if(range.end > range.start){
+			this.processed_nanos.add(now - range.taken_time);
+			this.processed_count.add(range.end - range.start);
+		}
+		if(this.cancellation_token != null && this.cancellation_token.is_cancelled(now)){
+			range.start = range.end = this.to;
+			return false;
+		}
+
+		int chunk_size = this.chunk_size(this.next_index.get());
+		int start, end;
+		do{
+			start = this.next_index.get();
+			if(start >= this.to){
+				range.start = range.end = this.to;
+				return false;
+			}
+			end = start + Math.min(chunk_size, this.to - start);
+		}while(!this.next_index.compareAndSet(start, end));
+
+		range.start = start;
+		range.end = end;
+		range.taken_time = now;
+		return true;
+	}
+
+	/**
+	 * @param start the first index of the next chunk
+	 * @return size of the next chunk, at least 1
+	 */
+	private int chunk_size(int start){
+		long guided_size = ((long) this.to - start) / (2L * this.worker_count);
+
+		long count = this.processed_count.sum();
+		if(count == 0) return 1;	// no measurement yet
+
+		long nanos_per_index = Math.max(1, this.processed_nanos.sum() / count);
+		long timed_size = this.target_chunk_nanos / nanos_per_index;
+
+		return (int) Math.max(1, Math.min(guided_size, timed_size));
+	}
+}
@@ -0,0 +1,394 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An RTree frozen into contiguous arrays for fast covering rule lookups, the rules are found in the same order as by the RTree.
+ * </br>Nodes are numbered in the breadth-first order so that the children of a node are consecutive (CSR layout):
+ * </br> + the children of node i are the nodes [child_starts[i], child_starts[i+1]), node 0 is the root,
+ * </br> + selector_IDs[i] and rule_indices[i] are the selector ID and the index of the rule (-1 if none) of node i.
+ * </br>A lookup traverses the matching nodes depth-first with an explicit stack, instead of scanning the example back for each child.
+ * The children of a node and the example are both increasingly sorted, they are matched in the cheaper way:
+ * by a position map of the example if the children are fewer than the remaining selector IDs of the example,
+ * otherwise by binary searches of the selector IDs in the children. The position map and the stack are buffers of the calling thread,
+ * lookups do not allocate and can be called from many threads.
+ * </br>The tree is a snapshot, rules inserted into the source RTree afterwards and later changes of the rule statistics are not seen.
+ */
+public class CompiledRTree implements RuleMatcher {
+	private final RTree source;
+	private final int[] selector_IDs;
+	private final int[] rule_indices;
+	private final int[] child_starts;
+	private final RuleInfo[] rules;
+	private final int[] headIDs;				// the rule statistics used by the selection, copied for locality
+	private final double[] heuristic_values;
+	private final double[] ps;
+	private final int[] subtree_best;			// the best rule in the subtree of each node, in the order of 'is_better', -1 if none
+	private final int[] classIDs;				// the distinct heads of the rules, increasingly sorted
+	private final ClassBounds[] class_subtree_best;	// the same per class, in the order of 'is_better_full_covering'
+	private final int max_selector_ID;
+	private final int max_depth;
+	
+	private final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>(){
+		@Override
+		protected Buffers initialValue(){
+			return new Buffers(max_selector_ID + 1, max_depth + 1);
+		}
+	};
+	
+	/**
+	 * The best rule of one class in the subtree of each node, stored only for the nodes with a rule of the class in their subtree.
+	 * </br>A bit per node marks these nodes, the rank of the bit (the number of marked nodes before it) indexes the stored rules.
+	 */
+	private static class ClassBounds {
+		final long[] marks;		// bit 'node' is set if the subtree of 'node' has a rule of the class
+		final int[] ranks;		// the number of marked nodes before each word of 'marks'
+		final int[] best;		// the best rule of each marked node, in the order of the nodes
+		
+		/**
+		 * @param bounds the best rule of the class in the subtree of each node, -1 if none
+		 */
+		ClassBounds(int[] bounds){
+			this.marks = new long[(bounds.length + 63) >>> 6];
+			this.ranks = new int[this.marks.length];
+			int count = 0;
+			for(int node=0; node<bounds.length; node++){
+				if(bounds[node] < 0) continue;
+				this.marks[node >>> 6] |= 1L << (node & 63);
+				count++;
+			}
+			this.best = new int[count];
+			count = 0;
+			for(int word=0; word<this.marks.length; word++){
+				this.ranks[word] = count;
+				count += Long.bitCount(this.marks[word]);
+			}
+			count = 0;
+			for(int node=0; node<bounds.length; node++){
+				if(bounds[node] > -1) this.best[count++] = bounds[node];
+			}
+		}
+		
+		/**
+		 * @return the best rule of the class in the subtree of 'node', -1 if none
+		 */
+		int get(int node){
+			int word = node >>> 6;
+			long bit = 1L << (node & 63);
+			if((this.marks[word] & bit) == 0) return -1;
+			return this.best[this.ranks[word] + Long.bitCount(this.marks[word] & (bit - 1))];
+		}
+	}
+	
+	private static class Buffers {
+		final int[] positions;	// position+1 of each selector ID in the example, 0 if absent
+		final int[] stack;		// frames of 4 ints, see 'traverse'
+		
+		Buffers(int selector_count, int depth){
+			this.positions = new int[selector_count];
+			this.stack = new int[depth << 2];
+		}
+	}
+	
+	/**
+	 * @param tree
+	 */
+	public CompiledRTree(RTree tree){
+		this.source = tree;
+		
+		// Count nodes and rules, find the maximum selector ID and depth
+		int node_count = 0, rule_count = 0, max_selector_ID = 0, max_depth = 0;
+		ArrayDeque<RNode> queue = new ArrayDeque<RNode>();
+		ArrayDeque<Integer> depths = new ArrayDeque<Integer>();
+		queue.add(tree.getRoot());
+		depths.add(0);
+		while(!queue.isEmpty()){
+			RNode node = queue.poll();
+			int depth = depths.poll();
+			node_count++;
+			if(node.rule != null) rule_count++;
+			max_selector_ID = Math.max(max_selector_ID, node.selectorID);
+			max_depth = Math.max(max_depth, depth);
+			if(node.children == null) continue;
+			for(RNode child : node.children){
+				queue.add(child);
+				depths.add(depth+1);
+			}
+		}
+		
+		this.selector_IDs = new int[node_count];
+		this.rule_indices = new int[node_count];
+		this.child_starts = new int[node_count+1];
+		this.rules = new RuleInfo[rule_count];
+		this.headIDs = new int[rule_count];
+		this.heuristic_values = new double[rule_count];
+		this.ps = new double[rule_count];
+		this.max_selector_ID = max_selector_ID;
+		this.max_depth = max_depth;
+		
+		// Number nodes in the breadth-first order, the children of a node are numbered after all nodes queued before them
+		int node_index = 0, next_child_index = 1, rule_index = 0;
+		queue.add(tree.getRoot());
+		while(!queue.isEmpty()){
+			RNode node = queue.poll();
+			this.selector_IDs[node_index] = node.selectorID;
+			if(node.rule != null){
+				this.rules[rule_index] = node.rule;
+				this.headIDs[rule_index] = node.rule.headID;
+				this.heuristic_values[rule_index] = node.rule.heuristic_value;
+				this.ps[rule_index] = node.rule.p;
+				this.rule_indices[node_index] = rule_index;
+				rule_index++;
+			}else this.rule_indices[node_index] = -1;
+			
+			this.child_starts[node_index] = next_child_index;
+			if(node.children != null){
+				for(RNode child : node.children) queue.add(child);
+				next_child_index += node.children.size();
+			}
+			node_index++;
+		}
+		this.child_starts[node_count] = next_child_index;
+		
+		// Bounds of the subtrees, a child is numbered after its parent so the nodes are combined in the reverse order
+		this.subtree_best = Arrays.copyOf(this.rule_indices, node_count);
+		this.classIDs = distinct_sorted(this.headIDs);
+		int[] parents = new int[node_count];
+		for(int node=node_count-1; node>0; node--){
+			int parent = this.parent_of(node);
+			parents[node] = parent;
+			int index = this.subtree_best[node];
+			if(index > -1 && (this.subtree_best[parent] < 0 || this.is_better(index, this.subtree_best[parent]))){
+				this.subtree_best[parent] = index;
+			}
+		}
+		
+		// The class bounds are combined one class at a time in a shared buffer, only the nodes with a rule of the class are kept
+		this.class_subtree_best = new ClassBounds[this.classIDs.length];
+		int[] class_best = new int[node_count];
+		for(int c=0; c<this.classIDs.length; c++){
+			for(int node=0; node<node_count; node++){
+				int index = this.rule_indices[node];
+				class_best[node] = (index > -1 && this.headIDs[index] == this.classIDs[c]) ? index : -1;
+			}
+			for(int node=node_count-1; node>0; node--){
+				int parent = parents[node];
+				int index = class_best[node];
+				if(index > -1 && (class_best[parent] < 0 || this.is_better_full_covering(index, class_best[parent]))){
+					class_best[parent] = index;
+				}
+			}
+			this.class_subtree_best[c] = new ClassBounds(class_best);
+		}
+	}
+	
+	/**
+	 * @return the parent of 'node' > 0, by a binary search in the children ranges
+	 */
+	private int parent_of(int node){
+		int low = 0, high = this.child_starts.length-2;
+		while(low < high){
+			int mid = (low + high + 1) >>> 1;
+			if(this.child_starts[mid] <= node) low = mid;
+			else high = mid-1;
+		}
+		return low;	// the last node whose children start at or before 'node'
+	}
+	
+	private static int[] distinct_sorted(int[] values){
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int count = 0;
+		for(int i=0; i<sorted.length; i++){
+			if(i == 0 || sorted[i] != sorted[i-1]) sorted[count++] = sorted[i];
+		}
+		return Arrays.copyOf(sorted, count);
+	}
+	
+	/**
+	 * @param tree
+	 * @return true if this tree is compiled from 'tree'
+	 */
+	@Override
+	public boolean is_compiled_from(RTree tree){
+		return this.source == tree;
+	}
+	
+	public int node_count(){
+		return this.selector_IDs.length;
+	}
+	
+	@Override
+	public int rule_count(){
+		return this.rules.length;
+	}
+	
+	/**
+	 * The same rule as RuleComparator.select_best_rule on RTree.find_covering_rules
+	 * @param example an array of selector IDs, increasingly sorted in [0, length)
+	 * @param length the number of selector IDs to match, e.g. without the target selector id at the last position
+	 * @return the best covering rule in the order of RuleComparator.select_best_rule, null if no rule covers the example
+	 */
+	@Override
+	public RuleInfo find_best_covering_rule(int[] example, int length){
+		return this.traverse(example, length, -1, null);
+	}
+	
+	/**
+	 * Find the best rule fully covering a training example (the rule head is the class of the example), the selection of RuleManager:
+	 * the greatest heuristic value, then the greatest p, then the first found. Rules with the heuristic value -Double.MAX_VALUE are never selected.
+	 * @param example a training example, increasingly sorted selector IDs with the target selector id at the last position
+	 * @return the best full covering rule, null if not found
+	 */
+	@Override
+	public RuleInfo find_full_covering_rule(int[] example){
+		return this.traverse(example, example.length-1, example[example.length-1], null);
+	}
+	
+	/**
+	 * The same rules in the same order as RTree.find_covering_rules
+	 * @param example an array of selector IDs, increasingly sorted in [0, length)
+	 * @param length the number of selector IDs to match
+	 * @param covering_rules output, the covering rules are appended
+	 */
+	public void find_covering_rules(int[] example, int length, List<RuleInfo> covering_rules){
+		this.traverse(example, length, -1, covering_rules);
+	}
+	
+	/**
+	 * Visit the covering rules in the order of the RTree
+	 * @param classID the class of the full covering rules to select, -1 to select by RuleComparator
+	 * @param covering_rules collect all covering rules if not null
+	 * @return the selected rule, null if 'covering_rules' is given
+	 */
+	private RuleInfo traverse(int[] example, int length, int classID, List<RuleInfo> covering_rules){
+		Buffers buffers = this.buffers.get();
+		int[] positions = buffers.positions;
+		int[] stack = buffers.stack;
+		int[] selector_IDs = this.selector_IDs;
+		int[] child_starts = this.child_starts;
+		
+		// Bounds of the subtrees for the search of the best rule, none for the collection of all rules
+		int[] bounds = null;
+		ClassBounds class_bounds = null;
+		if(covering_rules == null){
+			if(classID < 0) bounds = this.subtree_best;
+			else{
+				int class_index = Arrays.binarySearch(this.classIDs, classID);
+				if(class_index < 0) return null;	// no rule of the class
+				class_bounds = this.class_subtree_best[class_index];
+			}
+		}
+		
+		for(int i=0; i<length; i++){
+			if(example[i] <= this.max_selector_ID) positions[example[i]] = i+1;
+		}
+		
+		// The state of matching the children of a node: the next child to match and the end of the children,
+		// the next position in the example and the end of the positions, i.e. the position of the selector ID of the node.
+		// The states of the ancestors are pushed to the stack, 4 ints each.
+		int child = child_starts[0], child_end = child_starts[1];
+		int position = 0, position_end = length;
+		int selected = -1;	// index of the selected rule
+		int depth = 0, frame;
+		while(true){
+			if(child >= child_end || position >= position_end){
+				// no more children or selector IDs to match, back to the parent
+				if(depth == 0) break;
+				depth--;
+				frame = depth << 2;
+				child = stack[frame];
+				child_end = stack[frame+1];
+				position = stack[frame+2];
+				position_end = stack[frame+3];
+				continue;
+			}
+			
+			// Children and the example are both increasingly sorted, take the cheaper way to match them
+			int matched, matched_position;
+			if(child_end - child <= position_end - position){
+				// few children: look up the position of the next child in the example
+				matched = child++;
+				matched_position = positions[selector_IDs[matched]] - 1;
+				if(matched_position < 0 || matched_position >= position_end) continue;
+			}else{
+				// many children: binary search the next selector ID of the example in the children
+				matched = Arrays.binarySearch(selector_IDs, child, child_end, example[position]);
+				matched_position = position++;
+				if(matched < 0){
+					child = -matched-1;
+					continue;
+				}
+				child = matched+1;
+			}
+			
+			// Skip the node and its subtree if no rule in them can beat the selected rule
+			if(bounds != null){
+				int bound = bounds[matched];
+				if(bound < 0 || (selected > -1 && !this.is_better(bound, selected))) continue;
+			}else if(class_bounds != null){
+				int bound = class_bounds.get(matched);
+				if(bound < 0 || !this.is_better_full_covering(bound, selected)) continue;
+			}
+			
+			int rule_index = this.rule_indices[matched];
+			if(rule_index > -1){
+				if(covering_rules != null){
+					covering_rules.add(this.rules[rule_index]);
+				}else if(classID < 0){
+					if(selected < 0 || this.is_better(rule_index, selected)) selected = rule_index;
+				}else if(this.headIDs[rule_index] == classID){
+					if(this.is_better_full_covering(rule_index, selected)) selected = rule_index;
+				}
+			}
+			
+			// The children of the matched node can only match the selector IDs before its position
+			if(matched_position > 0 && child_starts[matched] < child_starts[matched+1]){
+				frame = depth << 2;
+				stack[frame] = child;
+				stack[frame+1] = child_end;
+				stack[frame+2] = position;
+				stack[frame+3] = position_end;
+				depth++;
+				child = child_starts[matched];
+				child_end = child_starts[matched+1];
+				position = 0;
+				position_end = matched_position;
+			}
+		}
+		
+		for(int i=0; i<length; i++){
+			if(example[i] <= this.max_selector_ID) positions[example[i]] = 0;
+		}
+		return selected < 0 ? null : this.rules[selected];
+	}
+	
+	/**
+	 * The order of the full covering rules of RuleManager: heuristic value, then p, rules with the heuristic value -Double.MAX_VALUE are never selected
+	 * @param selected -1 if no rule is selected yet
+	 * @return true if rule 'index' is better than rule 'selected'
+	 */
+	private boolean is_better_full_covering(int index, int selected){
+		if(selected < 0) return this.heuristic_values[index] > -Double.MAX_VALUE;
+		return this.heuristic_values[selected] < this.heuristic_values[index] ||
+				(this.heuristic_values[selected] == this.heuristic_values[index] && this.ps[selected] < this.ps[index]);
+	}
+	
+	/**
+	 * The order of RuleComparator.select_better_rule
+	 * @return true if rule 'index' is better than rule 'selected'
+	 */
+	private boolean is_better(int index, int selected){
+		double h = this.heuristic_values[index], selected_h = this.heuristic_values[selected];
+		if(h != selected_h) return h > selected_h;
+		if(this.ps[index] != this.ps[selected]) return this.ps[index] > this.ps[selected];
+		return this.headIDs[index] < this.headIDs[selected];	// favor the inferior class
+	}
+}
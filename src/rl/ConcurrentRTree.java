@@ -0,0 +1,132 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RTree which can be read and inserted into by many threads at the same time, e.g. all threads of LORD* share the rules they found.
+ * </br>Rules are only added, never removed, so the tree is organized as:
+ * </br> + children of a node are kept in a sorted array which is copied on write, a new array is published by a volatile write,
+ * so readers traverse the tree without any lock and always see a consistent array,
+ * </br> + writers lock only the node whose children or rule they change.
+ * </br>A reader may miss a rule inserted concurrently, it sees the rule at its next lookup.
+ */
+public class ConcurrentRTree {
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	private final Node root = new Node(-1);
+
+	private static final class Node {
+		final int selectorID;
+		volatile Node[] children = NO_CHILDREN;
+		volatile RuleInfo rule = null;
+
+		Node(int selectorID){
+			this.selectorID = selectorID;
+		}
+	}
+
+	/**
+	 * Insert a quantified rule into the tree, ids in the body are inserted in the inverse order (as RTree.insert_rule_inverse_order).
+	 * </br>If a rule with the same body exists, the better one is kept.
+	 * @param body an array of selector IDs of a rule body
+	 * @param rule reference of a rule information record
+	 */
+	public void insert_rule_inverse_order(int[] body, RuleInfo rule) {
+		Node node = this.root;
+		for(int i=body.length-1; i>-1; i--) node = get_or_add_child(node, body[i]);
+
+		// The last node contains the reference to the rule
+		synchronized(node){
+			if(node.rule == null) node.rule = rule;
+			else node.rule = RuleComparator.select_better_rule(node.rule, rule);
+		}
+	}
+
+	/**
+	 * @return position of the child with 'selector_id' if found, otherwise -(insertion position)-1
+	 */
+	private static int search_child(Node[] children, int selector_id){
+		int low = 0, high = children.length-1, mid;
+		while(low <= high){
+			mid = (low + high) >>> 1;
+			if(children[mid].selectorID < selector_id) low = mid + 1;
+			else if(children[mid].selectorID > selector_id) high = mid - 1;
+			else return mid;
+		}
+		return -(low + 1);
+	}
+
+	private static Node get_or_add_child(Node node, int selector_id){
+		Node[] children = node.children;
+		int position = search_child(children, selector_id);
+		if(position > -1) return children[position];
+
+		synchronized(node){
+			// The children may be changed before the lock is taken
+			children = node.children;
+			position = search_child(children, selector_id);
+			if(position > -1) return children[position];
+
+			position = -position - 1;
+			Node child = new Node(selector_id);
+			Node[] new_children = new Node[children.length+1];
+			System.arraycopy(children, 0, new_children, 0, position);
+			new_children[position] = child;
+			System.arraycopy(children, position, new_children, position+1, children.length-position);
+			node.children = new_children;
+			return child;
+		}
+	}
+
+	/**
+	 * Find all covering rules in the tree
+	 * @param example an array of selector IDs based on attribute values of an example
+	 * </br> example = [increasingly sorted prediction selector ids][target selector id]
+	 * @return list of the found covering rules
+	 */
+	public List<RuleInfo> find_covering_rules(int[] example){
+		List<RuleInfo> covering_rules = new ArrayList<RuleInfo>();
+
+		for(Node child : this.root.children){
+			// The last id in the input example is target selector id which does not present in the tree.
+			find_covering_rules_recursive(child, example, example.length-2, covering_rules);
+		}
+
+		return covering_rules;
+	}
+	private static void find_covering_rules_recursive(Node node, int[] example, int curr_index, List<RuleInfo> covering_rules){
+		int next_index;
+		for(next_index=curr_index; next_index > -1; next_index--){
+			if(example[next_index] == node.selectorID){
+				RuleInfo rule = node.rule;
+				if(rule != null) covering_rules.add(rule);
+				next_index--;
+				break;
+			}
+		}
+
+		// If no more children or no more matching to test, stop search with the branch
+		if(next_index < 0) return;
+
+		for(Node child : node.children){
+			find_covering_rules_recursive(child, example, next_index, covering_rules);
+		}
+	}
+
+	public List<RuleInfo> get_rule_list(){
+		List<RuleInfo> rule_list = new ArrayList<RuleInfo>();
+		for(Node node : this.root.children) collect_rules(node, rule_list);
+		return rule_list;
+	}
+	private static void collect_rules(Node node, List<RuleInfo> rule_list){
+		RuleInfo rule = node.rule;
+		if(rule != null) rule_list.add(rule);
+		for(Node child : node.children) collect_rules(child, rule_list);
+	}
+}
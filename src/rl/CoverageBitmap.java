@@ -0,0 +1,105 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Shared marks of training rows which are classified correctly by the rules found so far, for LORD*.
+ * </br>When a rule is added, the Nlist of its body is expanded to the rows it covers (see RowNodeIndex), then for each covered row:
+ * </br> + the best rule covering the row is updated by CAS, with the order of RuleComparator.select_better_rule,
+ * </br> + the bit of the row is set if the best rule predicts the class of the row, otherwise it is cleared.
+ * </br>So a row is checked by one bit test instead of finding and comparing its covering rules in a rule tree.
+ */
+public class CoverageBitmap {
+	private final int[][] selectorID_records;
+	private final INlist[] selector_nlists;
+	private final RowNodeIndex row_index;
+	private final AtomicLongArray bits;
+	private final AtomicReferenceArray<RuleInfo> best_rules;
+
+	/**
+	 * @param selectorID_records training records, each record is in ascending order and ends with the class ID
+	 * @param selector_nlists Nlists of selectors built from 'selectorID_records'
+	 */
+	public CoverageBitmap(int[][] selectorID_records, INlist[] selector_nlists){
+		this.selectorID_records = selectorID_records;
+		this.selector_nlists = selector_nlists;
+		this.row_index = new RowNodeIndex(selectorID_records);
+		this.bits = new AtomicLongArray((selectorID_records.length + 63) >>> 6);
+		this.best_rules = new AtomicReferenceArray<RuleInfo>(selectorID_records.length);
+	}
+
+	/**
+	 * @return true if the best rule covering the row predicts its class
+	 */
+	public boolean is_covered(int row){
+		return (this.bits.get(row >>> 6) & (1L << row)) != 0;
+	}
+
+	/**
+	 * @return the best rule covering the row, null if no rule covers it
+	 */
+	public RuleInfo best_rule(int row){
+		return this.best_rules.get(row);
+	}
+
+	/**
+	 * Update the best rules and the marks of all rows covered by the rule
+	 * @param rule
+	 * @return the number of rows covered by the rule
+	 */
+	public int add_rule(RuleInfo rule){
+		int[] covered_rows = this.row_index.covered_rows(this.create_body_nlist(rule.body));
+		RuleInfo best_rule;
+		for(int row : covered_rows){
+			do{
+				best_rule = this.best_rules.get(row);
+				if(best_rule != null && RuleComparator.select_better_rule(best_rule, rule) == best_rule) break;
+			}while(!this.best_rules.compareAndSet(row, best_rule, rule));
+			this.update_bit(row);
+		}
+		return covered_rows.length;
+	}
+
+	/**
+	 * Make the bit of the row agree with its best rule.
+	 * </br>If the best rule is changed by another thread meanwhile, the bit is computed again, so the last one wins.
+	 */
+	private void update_bit(int row){
+		int[] record = this.selectorID_records[row];
+		int classID = record[record.length-1];
+		int word = row >>> 6;
+		long mask = 1L << row;
+		RuleInfo best_rule;
+		long old_bits;
+		do{
+			best_rule = this.best_rules.get(row);
+			do{
+				old_bits = this.bits.get(word);
+			}while(!this.bits.compareAndSet(word, old_bits,
+						(best_rule.headID == classID) ? (old_bits | mask) : (old_bits & ~mask)));
+		}while(this.best_rules.get(row) != best_rule);
+	}
+
+	/**
+	 * @return the Nlist of the conjunction of the selectors in the body, its nodes are nodes of the deepest selector
+	 * whose paths contain all the selectors, a root-like Nlist covering all rows if the body is empty
+	 */
+	private INlist create_body_nlist(int[] body){
+		if(body.length == 0){
+			Nodelist nlist = new Nodelist(1);
+			nlist.add(0, Integer.MAX_VALUE, this.selectorID_records.length);
+			return nlist;
+		}
+		INlist nlist = this.selector_nlists[body[0]];
+		for(int i=1; i<body.length && nlist.size() > 0; i++){
+			nlist = Supporter.create_nlist_conj(nlist, this.selector_nlists[body[i]]);
+		}
+		return nlist;
+	}
+}
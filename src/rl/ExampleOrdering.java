@@ -0,0 +1,107 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Orders in which training examples are given to the rule search threads.
+ * </br> + FILE: the order of the data file, no permutation.
+ * </br> + PPC_PATH: pre-order of the PPCTree paths of the examples, consecutive examples share the longest prefixes of selectors,
+ * so they work on the same Nlists.
+ * </br> + CLASS_FREQUENCY: examples of the most frequent class first, in PPC_PATH order inside a class.
+ * </br> + COVERAGE_FIRST: examples with the most frequent selectors first, for LORD*, their rules tend to be general
+ * and let the threads skip many later examples.
+ */
+public class ExampleOrdering {
+	public enum ORDER_TYPES {FILE, PPC_PATH, CLASS_FREQUENCY, COVERAGE_FIRST}
+
+	/**
+	 * @param order_type
+	 * @param records records of selector IDs, each record is in ascending order and ends with the class ID
+	 * @param selector_nlists Nlists of selectors, for their support counts
+	 * @return positions of the records in the order, null for FILE (identical order)
+	 */
+	public static int[] get_order(ORDER_TYPES order_type, final int[][] records, INlist[] selector_nlists){
+		if(order_type == null || order_type == ORDER_TYPES.FILE) return null;
+
+		Integer[] rows = new Integer[records.length];
+		for(int i=0; i<records.length; i++) rows[i] = i;
+
+		Comparator<Integer> comparator;
+		switch(order_type){
+		case PPC_PATH:
+			comparator = new Comparator<Integer>(){
+				@Override
+				public int compare(Integer row1, Integer row2) {
+					return SortedNlistBuilder.REVERSED_RECORD_COMPARATOR.compare(records[row1], records[row2]);
+				}
+			};
+			break;
+		case CLASS_FREQUENCY:
+			// selectors with higher frequencies have greater selector IDs, the class ID is the last one of a record
+			comparator = new Comparator<Integer>(){
+				@Override
+				public int compare(Integer row1, Integer row2) {
+					int[] record1 = records[row1], record2 = records[row2];
+					if(record1.length == 0 || record2.length == 0) return record1.length - record2.length;
+					int class1 = record1[record1.length-1], class2 = record2[record2.length-1];
+					if(class1 != class2) return class1 > class2 ? -1 : 1;
+					return SortedNlistBuilder.REVERSED_RECORD_COMPARATOR.compare(record1, record2);
+				}
+			};
+			break;
+		case COVERAGE_FIRST:
+			final long[] supports = new long[records.length];
+			for(int i=0; i<records.length; i++){
+				int[] record = records[i];
+				for(int j=0; j<record.length-1; j++) supports[i] += selector_nlists[record[j]].supportCount();
+			}
+			comparator = new Comparator<Integer>(){
+				@Override
+				public int compare(Integer row1, Integer row2) {
+					return Long.compare(supports[row2], supports[row1]);
+				}
+			};
+			break;
+		default:
+			return null;
+		}
+
+		Arrays.parallelSort(rows, comparator);	// stable, ties keep the file order
+
+		int[] order = new int[rows.length];
+		for(int i=0; i<rows.length; i++) order[i] = rows[i];
+		return order;
+	}
+
+	/**
+	 * Locality of an order: the average fraction of the body selectors of an example which are shared with
+	 * the path prefix of the previous example, i.e. the part of the Nlist work which could be reused.
+	 * @param order positions of the records, null for the file order
+	 * @param records records of selector IDs, each record is in ascending order and ends with the class ID
+	 * @return a value in [0, 1]
+	 */
+	public static double prefix_reuse_rate(int[] order, int[][] records){
+		long shared = 0, total = 0;
+		int[] previous = null;
+		for(int i=0; i<records.length; i++){
+			int[] record = records[order == null ? i : order[i]];
+			total += record.length;
+			if(previous != null){
+				int a = previous.length-1, b = record.length-1;
+				while(a > -1 && b > -1 && previous[a] == record[b]){
+					shared++;
+					a--;
+					b--;
+				}
+			}
+			previous = record;
+		}
+		return total == 0 ? 0 : (double) shared / total;
+	}
+}
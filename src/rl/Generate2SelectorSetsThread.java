@@ -7,45 +7,45 @@ package rl;
 
 import java.util.List;
 
-import rl.IntHolder;
-import rl.Matrix;
+import rl.ChunkScheduler;
 import rl.PPCNode;
 
-class Generate2SelectorSetsThread extends Thread{
+class Generate2SelectorSetsThread implements Runnable{
 	private List<PPCNode> child_list;
-	private Matrix matrix;
-	private IntHolder globalIndex;
+	private int[][] records;
+	private PairCounter counter;
+	private ChunkScheduler scheduler;
 	private int id;
 	
 	public Generate2SelectorSetsThread(List<PPCNode> child_list,
-									Matrix matrix,
-									IntHolder globalIndex,
+									PairCounter counter,
+									ChunkScheduler scheduler,
 									int id){
 		this.child_list = child_list;
-		this.matrix = matrix;
-		this.globalIndex = globalIndex;		
+		this.counter = counter;
+		this.scheduler = scheduler;		
+		this.id = id;
+	}
+	
+	/**
+	 * Count pairs directly from records of selector IDs, when there is no PPCTree
+	 */
+	public Generate2SelectorSetsThread(int[][] records,
+									PairCounter counter,
+									ChunkScheduler scheduler,
+									int id){
+		this.records = records;
+		this.counter = counter;
+		this.scheduler = scheduler;		
 		this.id = id;
-		this.setPriority(Thread.MAX_PRIORITY);
 	}
 	
 	// Overwrite the run method
 	public void run(){
 		long start = System.currentTimeMillis();
 		
-		PPCNode l1_child;
-		int size = child_list.size();
-		while (true){
-			synchronized(globalIndex){
-				if(globalIndex.value >= size) break;
-				l1_child = child_list.get(globalIndex.value);
-				globalIndex.value++;
-			}
-			
-			for(PPCNode l2_child : l1_child.children) update_recursive_supportcount_of_2selector_sets(l2_child);
-		}
-		
-		// Summary local support for 2selector_sets.
-		matrix.summary_by_diagonal_folding();
+		if(this.records != null) this.count_records();
+		else this.count_tree();
 		
 		// Just for testing
 		StringBuilder sb = new StringBuilder(100);
@@ -55,6 +55,32 @@ class Generate2SelectorSetsThread extends Thread{
 		System.out.println(sb.toString());
 	}
 	
+	private void count_tree(){
+		PPCNode l1_child;
+		ChunkScheduler.Range range = new ChunkScheduler.Range();
+		while (scheduler.next(range)){
+			for(int index=range.start; index<range.end; index++){
+				l1_child = child_list.get(index);
+			
+				for(PPCNode l2_child : l1_child.children) update_recursive_supportcount_of_2selector_sets(l2_child);
+			}
+		}
+	}
+	
+	private void count_records(){
+		int[] record;
+		ChunkScheduler.Range range = new ChunkScheduler.Range();
+		while (scheduler.next(range)){
+			for(int index=range.start; index<range.end; index++){
+				record = records[index];
+			
+				for(int i=1; i<record.length; i++){
+					for(int j=0; j<i; j++) counter.add(record[i], record[j], 1);
+				}
+			}
+		}
+	}
+	
 	/**
 	 * This procedure accumulate the support count for 2-itemsets, the items are in item_Index
 	 * @param node
@@ -64,7 +90,7 @@ class Generate2SelectorSetsThread extends Thread{
     	
     	while(parentNode.parent != null){	// if parentNode.parent == null, parentNode is the root.
     		// Note: node.itemID means selectorID
-    		matrix.add(node.itemID, parentNode.itemID, node.count);
+    		counter.add(node.itemID, parentNode.itemID, node.count);
     		parentNode = parentNode.parent;
     	}
     	
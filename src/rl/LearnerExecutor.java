@@ -0,0 +1,119 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors to run the parallel tasks of learners (rule search, rule filtering, pair counting, discretization).
+ * </br>Instead of creating and joining new threads at each call, the tasks are submitted to an executor which lives across calls,
+ * so that threads (and their thread-local state) are reused over folds, runs and models in a long-lived JVM.
+ * </br>Without an executor given by the caller, a shared default one is used: a cached pool of daemon threads,
+ * idle threads are released after one minute.
+ */
+public final class LearnerExecutor {
+	private static volatile ExecutorService shared_executor = null;
+
+	private LearnerExecutor(){}
+
+	/**
+	 * @return the shared default executor, created at the first call
+	 */
+	public static ExecutorService shared(){
+		ExecutorService executor = shared_executor;
+		if(executor == null){
+			synchronized(LearnerExecutor.class){
+				if(shared_executor == null) shared_executor = Executors.newCachedThreadPool(new DaemonThreadFactory("lord-worker-"));
+				executor = shared_executor;
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Create an executor which starts a new virtual thread for each task (Java 21 or later), looked up by reflection
+	 * so that the code still runs on older JVMs.
+	 * @return a new virtual-thread-per-task executor, to be shut down by the caller
+	 * @throws UnsupportedOperationException if the JVM does not support virtual threads
+	 */
+	public static ExecutorService virtual_threads(){
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads are not supported by this JVM", e);
+		}
+	}
+
+	/**
+	 * Run the tasks on the executor and wait until all of them finish.
+	 * </br>Note: the tasks must not wait for each other, and the executor must not be the one running the caller
+	 * if it has fewer threads than the tasks.
+	 * </br>If the calling thread is interrupted while waiting, 'token' is cancelled and the tasks, which check it through
+	 * their ChunkScheduler, are waited to stop, so that no task still writes to the shared results when this returns.
+	 * The interrupt status of the calling thread is kept.
+	 * @param executor
+	 * @param tasks
+	 * @param token the cancellation token of the ChunkScheduler of the tasks
+	 * @throws RuntimeException wrapping the first exception thrown by a task
+	 */
+	public static void invoke_all(ExecutorService executor, Runnable[] tasks, CancellationToken token){
+		List<Future<?>> futures = new ArrayList<Future<?>>(tasks.length);
+		boolean interrupted = false;
+		try{
+			for(Runnable task : tasks) futures.add(executor.submit(task));
+			for(Future<?> future : futures){
+				while(true){
+					try{
+						future.get();
+						break;
+					}catch(InterruptedException e){
+						interrupted = true;
+						token.cancel("interrupted");
+					}
+				}
+			}
+		}catch(ExecutionException e){
+			throw rethrow(e, futures);
+		}finally{
+			if(interrupted) Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Cancel the remaining tasks
+	 * @return the exception thrown by the task, to be thrown by the caller
+	 */
+	private static RuntimeException rethrow(ExecutionException e, List<Future<?>> futures){
+		for(Future<?> future : futures) future.cancel(true);
+		Throwable cause = e.getCause();
+		if(cause instanceof RuntimeException) return (RuntimeException) cause;
+		if(cause instanceof Error) throw (Error) cause;
+		return new RuntimeException(cause);
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger(0);
+
+		DaemonThreadFactory(String prefix){
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, this.prefix + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
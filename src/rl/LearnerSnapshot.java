@@ -0,0 +1,289 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+import prepr.Attribute;
+import prepr.Selector;
+
+/**
+ * Versioned binary snapshot of the preprocessing results of a RuleLearner:
+ * scalar values, attributes with their selectors and discretization cut points, records of selector IDs and Nlists of selectors.
+ * </br>A snapshot is read through a memory-mapped file, so 'fetch_information' can be skipped on repeat runs of the same data set.
+ * </br>
+ * </br>Layout (big-endian), version 1:
+ * </br> header: magic 'LORD', version
+ * </br> scalars: row_count, min_sup_count, attr_count, predict_attr_count, target_attr_count, numeric_attr_count,
+ * distinct_value_count, selector_count, predict_selector_count, target_selector_count
+ * </br> attributes: for each attribute: name, type, cut point count (-1 if none) and cut points,
+ * selector count and for each selector: distinct value, frequency, selectorID, distinctValueID
+ * </br> records: row_count records, each one is length and selector IDs
+ * </br> Nlists: selector_count Nlists, each one is size, pre-codes, pos-codes and support counts
+ * </br> end mark
+ */
+public final class LearnerSnapshot {
+	public static final int MAGIC = 0x4C4F5244;	// 'LORD'
+	public static final int VERSION = 1;
+	private static final int END_MARK = 0x454E4421;	// 'END!'
+
+	/**
+	 * Maximum size of one mapped window, a larger file is mapped window by window
+	 */
+	private static final long MAX_WINDOW_SIZE = 1L << 30;
+
+	private LearnerSnapshot(){}
+
+	/**
+	 * Write the preprocessing results of 'learner' to a snapshot file.
+	 * </br>Require 'fetch_information' to have been called on the learner.
+	 * @param learner
+	 * @param file_name
+	 * @throws IOException
+	 */
+	public static void store(RuleLearner learner, String file_name) throws IOException{
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file_name), 1<<16));
+		try{
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+
+			// Scalars
+			output.writeInt(learner.row_count);
+			output.writeInt(learner.min_sup_count);
+			output.writeInt(learner.attr_count);
+			output.writeInt(learner.predict_attr_count);
+			output.writeInt(learner.target_attr_count);
+			output.writeInt(learner.numeric_attr_count);
+			output.writeInt(learner.distinct_value_count);
+			output.writeInt(learner.selector_count);
+			output.writeInt(learner.predict_selector_count);
+			output.writeInt(learner.target_selector_count);
+
+			// Attributes and their atom selectors
+			for(Attribute attr : learner.attributes){
+				write_string(output, attr.name);
+				output.writeInt(attr.type.ordinal());
+				if(attr.discretized_values == null){
+					output.writeInt(-1);
+				}else{
+					output.writeInt(attr.discretized_values.length);
+					for(double cut_point : attr.discretized_values) output.writeDouble(cut_point);
+				}
+				output.writeInt(attr.distinct_values.size());
+				for(Selector s : attr.distinct_values.values()){
+					write_string(output, s.distinctValue);
+					output.writeInt(s.frequency);
+					output.writeInt(s.selectorID);
+					output.writeInt(s.distinctValueID);
+				}
+			}
+
+			// Records of selector IDs
+			for(int[] record : learner.selectorID_records){
+				output.writeInt(record.length);
+				for(int id : record) output.writeInt(id);
+			}
+
+			// Nlists of selectors
+			Node node = new Node();
+			for(INlist nlist : learner.selector_nlists){
+				int size = nlist.size();
+				output.writeInt(size);
+				for(int i=0; i<size; i++){ nlist.get(i, node); output.writeInt(node.pre); }
+				for(int i=0; i<size; i++){ nlist.get(i, node); output.writeInt(node.pos); }
+				for(int i=0; i<size; i++){ nlist.get(i, node); output.writeInt(node.count); }
+			}
+
+			output.writeInt(END_MARK);
+		}finally{
+			output.close();
+		}
+	}
+
+	/**
+	 * Restore the preprocessing results of a snapshot file into 'learner'.
+	 * @param learner
+	 * @param file_name
+	 * @throws IOException
+	 * @throws DataFormatException if the file is not a snapshot, or of an unsupported version, or truncated
+	 */
+	public static void load(RuleLearner learner, String file_name) throws IOException, DataFormatException{
+		MappedInput input = new MappedInput(file_name);
+		try{
+			if(input.getInt() != MAGIC) throw new DataFormatException("Not a snapshot file: " + file_name);
+			int version = input.getInt();
+			if(version != VERSION) throw new DataFormatException("Unsupported snapshot version: " + version);
+
+			// Scalars
+			int row_count = input.getInt();
+			int min_sup_count = input.getInt();
+			int attr_count = input.getInt();
+			int predict_attr_count = input.getInt();
+			int target_attr_count = input.getInt();
+			int numeric_attr_count = input.getInt();
+			int distinct_value_count = input.getInt();
+			int selector_count = input.getInt();
+			int predict_selector_count = input.getInt();
+			int target_selector_count = input.getInt();
+
+			// Attributes and their atom selectors
+			List<Attribute> attributes = new ArrayList<Attribute>(attr_count);
+			Selector[] atom_selectors = new Selector[distinct_value_count];
+			Selector[] constructing_selectors = new Selector[selector_count];
+			Attribute.DATA_TYPE[] types = Attribute.DATA_TYPE.values();
+
+			for(int attr_id=0; attr_id<attr_count; attr_id++){
+				String name = input.getString();
+				Attribute attr = new Attribute(attr_id, name, types[input.getInt()]);
+
+				double[] discretized_values = null;
+				int cut_point_count = input.getInt();
+				if(cut_point_count > -1){
+					discretized_values = new double[cut_point_count];
+					for(int i=0; i<cut_point_count; i++) discretized_values[i] = input.getDouble();
+				}
+
+				int value_count = input.getInt();
+				Map<String, Selector> distinct_values = new HashMap<String, Selector>(value_count);
+				for(int i=0; i<value_count; i++){
+					Selector s = new Selector(attr_id, name, input.getString(), input.getInt());
+					s.selectorID = input.getInt();
+					s.distinctValueID = input.getInt();
+					distinct_values.put(s.distinctValue, s);
+					atom_selectors[s.distinctValueID] = s;
+					if(s.selectorID != Selector.INVALID_ID) constructing_selectors[s.selectorID] = s;
+				}
+				attr.restore_discretized_values(discretized_values, distinct_values);
+				attributes.add(attr);
+			}
+
+			// Records of selector IDs
+			int[][] selectorID_records = new int[row_count][];
+			for(int i=0; i<row_count; i++){
+				selectorID_records[i] = input.getInts(input.getInt());
+			}
+
+			// Nlists of selectors
+			INlist[] selector_nlists = new INlist[selector_count];
+			for(int i=0; i<selector_count; i++){
+				int size = input.getInt();
+				selector_nlists[i] = new Nodelist(input.getInts(size), input.getInts(size), input.getInts(size));
+			}
+
+			if(input.getInt() != END_MARK) throw new DataFormatException("Corrupted snapshot file: " + file_name);
+
+			// Everything is read, now fill the learner
+			learner.row_count = row_count;
+			learner.min_sup_count = min_sup_count;
+			learner.attr_count = attr_count;
+			learner.predict_attr_count = predict_attr_count;
+			learner.target_attr_count = target_attr_count;
+			learner.numeric_attr_count = numeric_attr_count;
+			learner.distinct_value_count = distinct_value_count;
+			learner.selector_count = selector_count;
+			learner.predict_selector_count = predict_selector_count;
+			learner.target_selector_count = target_selector_count;
+
+			learner.attributes = attributes;
+			learner.atom_selectors = new ArrayList<Selector>(atom_selectors.length);
+			for(Selector s : atom_selectors) learner.atom_selectors.add(s);
+			learner.constructing_selectors = new ArrayList<Selector>(constructing_selectors.length);
+			for(Selector s : constructing_selectors) learner.constructing_selectors.add(s);
+
+			learner.selectorID_records = selectorID_records;
+			learner.selector_nlists = selector_nlists;
+		}catch(BufferUnderflowException e){
+			throw new DataFormatException("Truncated snapshot file: " + file_name);
+		}finally{
+			input.close();
+		}
+	}
+
+	private static void write_string(DataOutputStream output, String value) throws IOException{
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * Sequential reader over a memory-mapped file, the file is mapped window by window
+	 */
+	private static class MappedInput {
+		private RandomAccessFile file;
+		private FileChannel channel;
+		private long file_size;
+		private long window_start = 0;
+		private MappedByteBuffer buffer;
+
+		MappedInput(String file_name) throws IOException{
+			this.file = new RandomAccessFile(file_name, "r");
+			this.channel = this.file.getChannel();
+			this.file_size = this.channel.size();
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(this.file_size, MAX_WINDOW_SIZE));
+		}
+
+		/**
+		 * Make sure that the next 'byte_count' bytes are in the current window
+		 */
+		private void require(int byte_count) throws IOException{
+			if(this.buffer.remaining() >= byte_count) return;
+			long position = this.window_start + this.buffer.position();
+			if(position + byte_count > this.file_size) throw new BufferUnderflowException();
+			this.window_start = position;
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, position,
+											Math.min(this.file_size - position, MAX_WINDOW_SIZE));
+		}
+
+		int getInt() throws IOException{
+			this.require(4);
+			return this.buffer.getInt();
+		}
+
+		double getDouble() throws IOException{
+			this.require(8);
+			return this.buffer.getDouble();
+		}
+
+		String getString() throws IOException{
+			int length = this.getInt();
+			this.require(length);
+			byte[] bytes = new byte[length];
+			this.buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		int[] getInts(int count) throws IOException{
+			int[] values = new int[count];
+			int offset = 0, chunk;
+			while(offset < count){
+				chunk = Math.min(count - offset, (int) (MAX_WINDOW_SIZE >> 3));
+				this.require(chunk << 2);
+				this.buffer.asIntBuffer().get(values, offset, chunk);
+				this.buffer.position(this.buffer.position() + (chunk << 2));
+				offset += chunk;
+			}
+			return values;
+		}
+
+		void close() throws IOException{
+			this.channel.close();
+			this.file.close();
+		}
+	}
+}
@@ -0,0 +1,28 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+/**
+ * Thrown by a learning run whose CancellationToken with the FAIL_FAST policy is cancelled
+ */
+public class LearningCancelledException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+	
+	private final String phase;
+	
+	/**
+	 * @param token the cancelled token
+	 * @param phase the phase of learning which was stopped, e.g. search, filter, discretization
+	 */
+	public LearningCancelledException(CancellationToken token, String phase){
+		super("Learning is stopped in the " + phase + " phase: " + token.getReason());
+		this.phase = phase;
+	}
+	
+	public String getPhase(){
+		return this.phase;
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Live telemetry of a learning run, exposed as an MBean (see LearningTelemetryMBean) and optionally logged periodically.
+ * </br>Set it to a learner by RuleLearner.setTelemetry before learning. Costs on the hot path are kept low:
+ * </br> + progress of a phase is read from its ChunkScheduler, which already counts the processed indices,
+ * </br> + Nlist intersections, scanned nodes and Nlist database hits are counted by RuleSearcher with LongAdder (striped per thread),
+ * through the SearchContext of the learner, so learners running together count to their own telemetry,
+ * </br> + the rule searches of each search thread are counted in its own slot, for the throughput per thread,
+ * </br> + rules found are read from the RuleStore of the run.
+ * </br>The ETA is the remaining part of the current phase divided by its throughput so far.
+ */
+public class LearningTelemetry implements LearningTelemetryMBean {
+	final LongAdder nlist_joins = new LongAdder();
+	final LongAdder nodes_scanned = new LongAdder();
+	final LongAdder nlist_cache_hits = new LongAdder();
+	final LongAdder nlist_db_entries = new LongAdder();
+	final LongAdder searches = new LongAdder();
+
+	private volatile String phase = "idle";
+	private volatile long start_time = System.currentTimeMillis();
+	private volatile long phase_start_time = start_time;
+	private volatile long gc_start_millis = gc_millis();
+
+	private volatile AtomicLongArray thread_searches = new AtomicLongArray(0);	// rule searches of each search thread
+	private volatile ChunkScheduler search_scheduler = null;
+	private volatile RuleStore rule_store = null;
+	private volatile ChunkScheduler filter_scheduler = null;
+
+	private ObjectName object_name = null;
+	private ScheduledExecutorService logger = null;
+
+	/**
+	 * Called when a run starts the rule search, counters of the previous run are kept except the counts per thread
+	 * @param scheduler the scheduler dispensing the examples to the search threads
+	 * @param rule_store the store receiving the found rules
+	 * @param thread_count number of search threads
+	 */
+	public void start_search(ChunkScheduler scheduler, RuleStore rule_store, int thread_count){
+		this.thread_searches = new AtomicLongArray(thread_count);
+		this.start_time = System.currentTimeMillis();
+		this.gc_start_millis = gc_millis();
+		this.search_scheduler = scheduler;
+		this.rule_store = rule_store;
+		this.filter_scheduler = null;
+		this.start_phase("search");
+	}
+
+	/**
+	 * Called when the rule filter starts
+	 * @param scheduler the scheduler dispensing the examples to the filter threads
+	 */
+	public void start_filter(ChunkScheduler scheduler){
+		this.filter_scheduler = scheduler;
+		this.start_phase("filter");
+	}
+
+	/**
+	 * Called when the run finishes
+	 */
+	public void finish(){
+		this.start_phase("done");
+	}
+
+	/**
+	 * Count one rule search of a search thread
+	 * @param thread_index index of the search thread, -1 if unknown
+	 */
+	void count_thread_search(int thread_index){
+		AtomicLongArray thread_searches = this.thread_searches;
+		if(thread_index > -1 && thread_index < thread_searches.length()) thread_searches.incrementAndGet(thread_index);
+	}
+
+	private void start_phase(String phase){
+		this.phase_start_time = System.currentTimeMillis();
+		this.phase = phase;
+	}
+
+	/**
+	 * Register the MBean to the platform MBean server with the name 'rl:type=LearningTelemetry,name=[name]'
+	 * @param name
+	 * @throws JMException
+	 */
+	public synchronized void register(String name) throws JMException{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		this.object_name = new ObjectName("rl:type=LearningTelemetry,name=" + ObjectName.quote(name));
+		server.registerMBean(this, this.object_name);
+	}
+
+	public synchronized void unregister() throws JMException{
+		if(this.object_name == null) return;
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.object_name);
+		this.object_name = null;
+	}
+
+	/**
+	 * Print the status line every 'period_millis' milliseconds by a daemon thread, until stop_logging is called
+	 * @param period_millis
+	 */
+	public synchronized void start_logging(long period_millis){
+		if(this.logger != null) return;
+		this.logger = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "lord-telemetry");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.logger.scheduleAtFixedRate(new Runnable(){
+			@Override
+			public void run() {
+				System.out.println(status_line());
+			}
+		}, period_millis, period_millis, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stop_logging(){
+		if(this.logger == null) return;
+		this.logger.shutdownNow();
+		this.logger = null;
+	}
+
+	/**
+	 * @return one line of the current status
+	 */
+	public String status_line(){
+		StringBuilder sb = new StringBuilder(200);
+		sb.append("\t[telemetry] phase=").append(this.getPhase())
+		.append(", examples=").append(this.getExamplesProcessed()).append('/').append(this.getExamplesTotal())
+		.append(String.format(" (%.1f/s)", this.getExamplesPerSecond()))
+		.append(", rules=").append(this.getRulesFound())
+		.append(", joins=").append(this.getNlistJoins())
+		.append(", nodes=").append(this.getNodesScanned())
+		.append(String.format(", nlist hit rate=%.3f", this.getNlistCacheHitRate()))
+		.append(String.format(", nlist_db avg=%.1f", this.getAverageNlistDbSize()))
+		.append(", searches/s per thread=[");
+		double[] rates = this.getSearchesPerSecondPerThread();
+		for(int i=0; i<rates.length; i++){
+			if(i > 0) sb.append(", ");
+			sb.append(String.format("%.1f", rates[i]));
+		}
+		sb.append(']')
+		.append(String.format(", filter=%.1f%%", this.getFilterProgress()*100))
+		.append(", gc=").append(this.getGcTimeMillis()).append(" ms")
+		.append(String.format(", eta=%.1f s", this.getEtaSeconds()));
+		return sb.toString();
+	}
+
+	private static long gc_millis(){
+		long millis = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	/////////////////////////////////////////////// MBEAN ATTRIBUTES //////////////////////////////////////////////
+	@Override
+	public String getPhase() {
+		return this.phase;
+	}
+
+	@Override
+	public long getElapsedMillis() {
+		return System.currentTimeMillis() - this.start_time;
+	}
+
+	@Override
+	public long getExamplesTotal() {
+		ChunkScheduler scheduler = this.search_scheduler;
+		return scheduler == null ? 0 : scheduler.size();
+	}
+
+	@Override
+	public long getExamplesProcessed() {
+		ChunkScheduler scheduler = this.search_scheduler;
+		return scheduler == null ? 0 : scheduler.completed();
+	}
+
+	@Override
+	public double getExamplesPerSecond() {
+		long millis = this.getElapsedMillis();
+		return millis == 0 ? 0 : this.getExamplesProcessed() * 1000.0 / millis;
+	}
+
+	@Override
+	public long getRulesFound() {
+		RuleStore rule_store = this.rule_store;
+		return rule_store == null ? 0 : rule_store.size();
+	}
+
+	@Override
+	public long getNlistJoins() {
+		return this.nlist_joins.sum();
+	}
+
+	@Override
+	public long getNodesScanned() {
+		return this.nodes_scanned.sum();
+	}
+
+	@Override
+	public long getNlistCacheHits() {
+		return this.nlist_cache_hits.sum();
+	}
+
+	@Override
+	public double getNlistCacheHitRate() {
+		long hits = this.nlist_cache_hits.sum();
+		long lookups = hits + this.nlist_joins.sum();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public double getAverageNlistDbSize() {
+		long count = this.searches.sum();
+		return count == 0 ? 0 : (double) this.nlist_db_entries.sum() / count;
+	}
+
+	@Override
+	public long[] getSearchesPerThread() {
+		AtomicLongArray thread_searches = this.thread_searches;
+		long[] counts = new long[thread_searches.length()];
+		for(int i=0; i<counts.length; i++) counts[i] = thread_searches.get(i);
+		return counts;
+	}
+
+	@Override
+	public double[] getSearchesPerSecondPerThread() {
+		long[] counts = this.getSearchesPerThread();
+		long millis = this.getElapsedMillis();
+		double[] rates = new double[counts.length];
+		for(int i=0; i<counts.length; i++) rates[i] = millis == 0 ? 0 : counts[i] * 1000.0 / millis;
+		return rates;
+	}
+
+	@Override
+	public double getFilterProgress() {
+		ChunkScheduler scheduler = this.filter_scheduler;
+		if(scheduler == null) return "done".equals(this.phase) ? 1 : 0;
+		return scheduler.size() == 0 ? 1 : (double) scheduler.completed() / scheduler.size();
+	}
+
+	@Override
+	public long getGcTimeMillis() {
+		return gc_millis() - this.gc_start_millis;
+	}
+
+	@Override
+	public double getEtaSeconds() {
+		ChunkScheduler scheduler;
+		String phase = this.phase;
+		if("search".equals(phase)) scheduler = this.search_scheduler;
+		else if("filter".equals(phase)) scheduler = this.filter_scheduler;
+		else return "done".equals(phase) ? 0 : -1;
+		if(scheduler == null) return -1;
+
+		long completed = scheduler.completed();
+		long millis = System.currentTimeMillis() - this.phase_start_time;
+		if(completed == 0 || millis == 0) return -1;
+		return (scheduler.size() - completed) * (millis / 1000.0) / completed;
+	}
+}
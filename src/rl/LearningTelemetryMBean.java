@@ -0,0 +1,79 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+/**
+ * JMX view of the progress of a learning run, see LearningTelemetry
+ */
+public interface LearningTelemetryMBean {
+	/**
+	 * @return current phase: idle, search, filter or done
+	 */
+	public String getPhase();
+
+	public long getElapsedMillis();
+
+	public long getExamplesTotal();
+
+	/**
+	 * @return examples processed (searched or skipped) in the search phase
+	 */
+	public long getExamplesProcessed();
+
+	public double getExamplesPerSecond();
+
+	/**
+	 * @return distinct rules found so far
+	 */
+	public long getRulesFound();
+
+	/**
+	 * @return Nlist intersections done by the rule searches
+	 */
+	public long getNlistJoins();
+
+	/**
+	 * @return nodes of the input Nlists of the intersections
+	 */
+	public long getNodesScanned();
+
+	/**
+	 * @return Nlists found in the per-example Nlist databases (nlist_db) without an intersection
+	 */
+	public long getNlistCacheHits();
+
+	public double getNlistCacheHitRate();
+
+	/**
+	 * @return average number of Nlists computed in the Nlist database of one rule search
+	 */
+	public double getAverageNlistDbSize();
+
+	/**
+	 * @return rule searches done by each search thread of the current run
+	 */
+	public long[] getSearchesPerThread();
+
+	/**
+	 * @return rule searches per second of each search thread since the search started, to spot slow or starved threads
+	 */
+	public double[] getSearchesPerSecondPerThread();
+
+	/**
+	 * @return fraction of the training examples processed by the rule filter, in [0, 1]
+	 */
+	public double getFilterProgress();
+
+	/**
+	 * @return garbage collection time of the JVM since the run started
+	 */
+	public long getGcTimeMillis();
+
+	/**
+	 * @return estimated seconds to finish the current phase, -1 if unknown
+	 */
+	public double getEtaSeconds();
+}
@@ -8,7 +8,12 @@ package rl;
 import java.util.ArrayList;
 import java.util.List;
 
-public class Matrix {
+/**
+ * Dense square matrix of support counts of pairs, dim*dim counters.
+ * </br>As a PairCounter, the count of a pair is kept in the upper-half portion.
+ * For a large number of selectors, use TriangularPairCounter or SparsePairCounter instead.
+ */
+public class Matrix implements PairCounter {
 	private int[][] matrix;
 	private int dim;
 	
@@ -17,16 +22,33 @@ public class Matrix {
 		matrix = new int[dim][dim];
 	}
 	
+	public int dim(){
+		return this.dim;
+	}
+	
 	public int get(int row, int col){
-		return matrix[row][col];
+		return (row < col) ? matrix[row][col] : matrix[col][row];
 	}
 	
 	public void set(int row, int col, int value){
-		matrix[row][col] = value;
+		if(row < col) matrix[row][col] = value;
+		else matrix[col][row] = value;
 	}
 	
 	public void add(int row, int col, int amount){
-		matrix[row][col] += amount;
+		if(row < col) matrix[row][col] += amount;
+		else matrix[col][row] += amount;
+	}
+	
+	/**
+	 * Pairs are visited in ascending order of (i, j)
+	 */
+	public void for_each_pair(int min_count, PairVisitor visitor){
+		for(int i=0; i<dim; i++){
+			for(int j=i+1; j<dim; j++){
+				if(matrix[i][j] >= min_count) visitor.visit(i, j, matrix[i][j]);
+			}
+		}
 	}
 	
 	public void show(){
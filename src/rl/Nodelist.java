@@ -25,6 +25,17 @@ public class Nodelist implements INlist {
 		this.ppc = new int[3][16];
 	}
  	
+ 	/**
+ 	 * New a Nodelist on existing arrays of the same length, e.g. read from a snapshot. The arrays are not copied.
+ 	 * @param pres pre-codes
+ 	 * @param poss pos-codes
+ 	 * @param counts support counts
+ 	 */
+ 	public Nodelist(int[] pres, int[] poss, int[] counts){
+ 		this.ppc = new int[][]{pres, poss, counts};
+ 		this.size = pres.length;
+ 	}
+ 	
  	/**
  	 * New a Nodelist but not allocate any resource. The purpose is to DELAY the allocation
  	 * @param isEmpty	No matter the value of isEmpty is. No allocation!
@@ -10,8 +10,10 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * PPCTree (PrePost Code tree) for generating Nlist of items or selectors.
@@ -198,6 +200,31 @@ public class PPCTree {
     	return selector_nlists;
      }
      
+     /**
+      * Create an Nlist (using Nodelist implementation) for each selector (selector ID) directly from the records of selector IDs,
+      * WITHOUT building a tree. The result is the same as building a tree from the records and then calling create_Nlist_for_selectors_arr.
+      * </br>The records are sorted (in parallel) in reverse-lexicographic order then swept once, see SortedNlistBuilder.
+      * @param records records of selector IDs, each record is in ascending order
+      * @param selector_count the number of selectors
+      * @return array of Nlists of selectors
+      */
+     public static INlist[] create_Nlist_for_selectors_arr(int[][] records, int selector_count){
+    	 return SortedNlistBuilder.build(records, selector_count);
+     }
+     
+     /**
+      * Same as create_Nlist_for_selectors_arr(int[][], int), but the records are sorted by an external merge sort,
+      * so the records (and the tree) do not need to fit in memory. It is an API for callers streaming their records,
+      * the learners keep all records in memory and do not use it.
+      * @param records iterator of records of selector IDs, each record is in ascending order
+      * @param selector_count the number of selectors
+      * @return array of Nlists of selectors
+      * @throws IOException
+      */
+     public static INlist[] create_Nlist_for_selectors_arr(Iterator<int[]> records, int selector_count) throws IOException{
+    	 return SortedNlistBuilder.build_external(records, selector_count);
+     }
+     
      /**
       * This function will create an Nlist (using Nodelist implementation) for each selector (selector ID) 
       * which was used to build the tree.
@@ -205,7 +232,7 @@ public class PPCTree {
       * @param total_selector_count the number of selectors used to build the tree
       * @return The map structure from string representation of each selector ID to the corresponding Nlist
       */
-      public Map<String, INlist> create_selector_Nlist_map(INlist[] selector_nlists){
+      public static Map<String, INlist> create_selector_Nlist_map(INlist[] selector_nlists){
     	  int total_selector_count = selector_nlists.length;
     	
     	  // Add all Nlists of selectors to nlistDB
@@ -257,23 +284,20 @@ public class PPCTree {
     /**
      * In a parallel way, count the support counts, stored in a matrix, of all 2-selector-sets.
      * </br>Column and row indices indicate selector Id, the value at each cell is the corresponding support count of the 2-selector-set
+     * </br>Each thread uses a dense matrix, so it is only suitable for a small number of selectors, see count_pair_supportcounts.
      * @param selector_count
      * @param thread_count
+     * @param executor runs the 'thread_count' counting tasks
+     * @param token the counting stops early if it is cancelled, the counts are then partial
      * @return int matrix of support counts
-     * @throws InterruptedException
      */
-    public Matrix count_supportcount_of_2selectorSets(int selector_count, int thread_count) throws InterruptedException {    	
+    public Matrix count_supportcount_of_2selectorSets(int selector_count, int thread_count,
+    												ExecutorService executor, CancellationToken token) {    	
     	Matrix[] matrixes = new Matrix[thread_count];
     	for(int i=0; i<thread_count; i++) matrixes[i] = new Matrix(selector_count);
     	Matrix matrix = matrixes[0];
-    	IntHolder globalIndex = new IntHolder(0);
     	
-    	Thread[] threads = new Thread[thread_count];
-    	for(int i=0; i<thread_count; i++){
-    		threads[i] = new Generate2SelectorSetsThread(this.root.children, matrixes[i], globalIndex, i);
-    		threads[i].start();
-        }
-        for(int i=0; i<thread_count; i++) threads[i].join();
+    	count_pairs_in_parallel(this.root.children, null, matrixes, thread_count, executor, token);
         
         // Sum all matrixes into the "matrix" (matrixes[0])
         for(int i=1; i<thread_count; i++) matrix.summary_with_matrix(matrixes[i]);
@@ -281,6 +305,74 @@ public class PPCTree {
     	return matrix;
     }
     
+    /**
+     * In a parallel way, count the support counts of all 2-selector-sets into a compact structure:
+     * </br>+ a packed upper-triangular counter shared by all threads (atomic updates), if it takes at most a quarter of the free heap,
+     * </br>+ otherwise, a sparse counter per thread, merged at the end. Memory is then proportional to the number of co-occurring pairs.
+     * @param selector_count
+     * @param thread_count
+     * @param executor runs the 'thread_count' counting tasks
+     * @param token the counting stops early if it is cancelled, the counts are then partial
+     * @return support counts of pairs
+     */
+    public PairCounter count_pair_supportcounts(int selector_count, int thread_count,
+    											ExecutorService executor, CancellationToken token) {
+    	return count_pair_supportcounts(this.root.children, null, selector_count, thread_count, executor, token);
+    }
+    
+    /**
+     * Same as count_pair_supportcounts(int, int, ExecutorService, CancellationToken), but count directly from records of selector IDs, when there is no tree
+     * (e.g. Nlists built by sorting records or restored from a snapshot).
+     * @param records records of selector IDs
+     * @param selector_count
+     * @param thread_count
+     * @param executor runs the 'thread_count' counting tasks
+     * @param token the counting stops early if it is cancelled, the counts are then partial
+     * @return support counts of pairs
+     */
+    public static PairCounter count_pair_supportcounts(int[][] records, int selector_count, int thread_count,
+    													ExecutorService executor, CancellationToken token) {
+    	return count_pair_supportcounts(null, records, selector_count, thread_count, executor, token);
+    }
+    
+    private static PairCounter count_pair_supportcounts(List<PPCNode> child_list, int[][] records,
+    													int selector_count, int thread_count,
+    													ExecutorService executor, CancellationToken token) {
+    	long packed_bytes = TriangularPairCounter.packed_size(selector_count)*4;
+    	Runtime rt = Runtime.getRuntime();
+    	long free_heap = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+    	
+    	PairCounter[] counters = new PairCounter[thread_count];
+    	if(packed_bytes <= Integer.MAX_VALUE && packed_bytes < free_heap/4){
+    		PairCounter shared_counter = new TriangularPairCounter(selector_count);
+    		for(int i=0; i<thread_count; i++) counters[i] = shared_counter;
+    		count_pairs_in_parallel(child_list, records, counters, thread_count, executor, token);
+    		return shared_counter;
+    	}
+    	
+    	for(int i=0; i<thread_count; i++) counters[i] = new SparsePairCounter(selector_count);
+    	count_pairs_in_parallel(child_list, records, counters, thread_count, executor, token);
+    	SparsePairCounter counter = (SparsePairCounter) counters[0];
+    	for(int i=1; i<thread_count; i++){
+    		counter.merge((SparsePairCounter) counters[i]);
+    		counters[i] = null;
+    	}
+    	return counter;
+    }
+    
+    private static void count_pairs_in_parallel(List<PPCNode> child_list, int[][] records, PairCounter[] counters,
+    											int thread_count, ExecutorService executor, CancellationToken token) {
+    	ChunkScheduler scheduler = new ChunkScheduler(records != null ? records.length : child_list.size(), thread_count);
+    	scheduler.setCancellationToken(token);
+    	
+    	Runnable[] tasks = new Runnable[thread_count];
+    	for(int i=0; i<thread_count; i++){
+    		if(records != null) tasks[i] = new Generate2SelectorSetsThread(records, counters[i], scheduler, i);
+    		else tasks[i] = new Generate2SelectorSetsThread(child_list, counters[i], scheduler, i);
+        }
+        LearnerExecutor.invoke_all(executor, tasks, token);
+    }
+    
     
     /////////////////////////////////////////////////////////////////////////////////////////////////////////////
     /////////////////////////////////// METHODS Supporting Incremental Learning /////////////////////////////////
@@ -0,0 +1,49 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+/**
+ * Support counts of 2-selector-sets (pairs of selector IDs).
+ * </br>A pair is unordered, add(i, j, ...) and add(j, i, ...) update the same count.
+ * Implementations: Matrix (dense), TriangularPairCounter (packed upper-triangular, thread-safe), SparsePairCounter (hash-based).
+ */
+public interface PairCounter {
+	
+	/**
+	 * Callback to iterate pairs without creating any objects
+	 */
+	public interface PairVisitor {
+		/**
+		 * @param i the smaller selector ID
+		 * @param j the greater selector ID
+		 * @param count support count of the pair
+		 */
+		public void visit(int i, int j, int count);
+	}
+	
+	/**
+	 * @return the number of selectors, selector IDs are in [0, dim)
+	 */
+	public int dim();
+	
+	/**
+	 * Add 'amount' to the support count of the pair (i, j), i != j
+	 */
+	public void add(int i, int j, int amount);
+	
+	/**
+	 * @return the support count of the pair (i, j), i != j
+	 */
+	public int get(int i, int j);
+	
+	/**
+	 * Visit all pairs whose support counts are at least 'min_count' (min_count > 0),
+	 * the visiting order depends on the implementation.
+	 * @param min_count
+	 * @param visitor
+	 */
+	public void for_each_pair(int min_count, PairVisitor visitor);
+}
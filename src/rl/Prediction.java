@@ -0,0 +1,34 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+/**
+ * Immutable result of a prediction: the predicted class ID and the rule which gives it.
+ * </br>Returned by the reentrant prediction methods (see RuleLearner.predict_record), which can be called from many threads.
+ */
+public final class Prediction {
+	/**
+	 * The predicted class ID
+	 */
+	public final int classID;
+	
+	/**
+	 * The best covering rule, null if the default class is predicted
+	 */
+	public final RuleInfo rule;
+	
+	public Prediction(int classID, RuleInfo rule){
+		this.classID = classID;
+		this.rule = rule;
+	}
+	
+	/**
+	 * @return true if no rule covers the example and the default class is predicted
+	 */
+	public boolean is_default(){
+		return this.rule == null;
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of prediction results keyed on the increasingly sorted selector IDs of an example, for repetitive examples.
+ * </br>The key is hashed to 64 bits, an entry is taken only if the hash and all selector IDs are equal.
+ * The slots are grouped in sets of WAYS consecutive slots, a key can only stay in the set of its hash:
+ * </br> + a lookup scans the set without lock and marks the found entry as referenced,
+ * </br> + an insertion takes an empty slot of the set, otherwise evicts by CLOCK in the set: from the hand of the set,
+ * referenced entries get a second chance (their mark is cleared), the first unreferenced one is replaced. A lost race only drops the insertion.
+ * </br>Entries are immutable except the reference mark, so lookups and insertions can be called from many threads.
+ * The cache must be cleared when the rules change.
+ * @param <V> type of the cached results
+ */
+public class PredictionCache<V> {
+	private static final int WAYS = 8;
+
+	private static class Entry<V> {
+		final long hash;
+		final int[] key;
+		final V value;
+		volatile boolean referenced = false;	// new entries must be hit once to get a second chance
+
+		Entry(long hash, int[] key, V value){
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	private final AtomicReferenceArray<Entry<V>> slots;
+	private final int set_mask;
+	private final int[] hands;		// the next slot of each set to examine for an eviction
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param capacity the maximum number of cached results, rounded up to a power of two, at least WAYS
+	 */
+	public PredictionCache(int capacity){
+		int slot_count = WAYS;
+		while(slot_count < capacity && slot_count < (1<<30)) slot_count <<= 1;
+		this.slots = new AtomicReferenceArray<Entry<V>>(slot_count);
+		this.set_mask = slot_count/WAYS - 1;
+		this.hands = new int[slot_count/WAYS];
+	}
+
+	public int capacity(){
+		return this.slots.length();
+	}
+
+	/**
+	 * @return the number of cached results, by a scan of the slots
+	 */
+	public int size(){
+		int size = 0;
+		for(int i=0; i<this.slots.length(); i++){
+			if(this.slots.get(i) != null) size++;
+		}
+		return size;
+	}
+
+	/**
+	 * @param example increasingly sorted selector IDs in [0, length)
+	 * @param length
+	 * @return the cached result of the selector IDs, null if not cached
+	 */
+	public V get(int[] example, int length){
+		long hash = hash(example, length);
+		int start = this.set_start(hash);
+		for(int i=start; i<start+WAYS; i++){
+			Entry<V> entry = this.slots.get(i);
+			if(entry != null && entry.hash == hash && equals(entry.key, example, length)){
+				if(!entry.referenced) entry.referenced = true;	// avoid writing shared lines on every hit
+				this.hits.increment();
+				return entry.value;
+			}
+		}
+		this.misses.increment();
+		return null;
+	}
+
+	/**
+	 * Cache the result of the selector IDs, the selector IDs are copied
+	 * @param example increasingly sorted selector IDs in [0, length)
+	 * @param length
+	 * @param value not null
+	 */
+	public void put(int[] example, int length, V value){
+		long hash = hash(example, length);
+		int start = this.set_start(hash);
+		int[] key = new int[length];
+		System.arraycopy(example, 0, key, 0, length);
+		Entry<V> new_entry = new Entry<V>(hash, key, value);
+
+		// An empty slot of the set, unless the key is put by another thread
+		int empty = -1;
+		for(int i=start; i<start+WAYS; i++){
+			Entry<V> entry = this.slots.get(i);
+			if(entry == null){
+				if(empty < 0) empty = i;
+			}else if(entry.hash == hash && equals(entry.key, example, length)) return;
+		}
+		if(empty > -1){
+			this.slots.compareAndSet(empty, null, new_entry);
+			return;
+		}
+
+		// CLOCK from the hand of the set, two rounds at most since the first one clears the reference marks
+		int set = start / WAYS, hand = this.hands[set];
+		for(int step=0; step<(WAYS<<1); step++){
+			int i = start + ((hand + step) & (WAYS-1));
+			Entry<V> entry = this.slots.get(i);
+			if(entry != null && entry.referenced){
+				entry.referenced = false;
+				continue;
+			}
+			if(this.slots.compareAndSet(i, entry, new_entry) && entry != null) this.evictions.increment();
+			this.hands[set] = (hand + step + 1) & (WAYS-1);	// a racy update only moves the hand differently
+			return;
+		}
+	}
+
+	/**
+	 * Remove all cached results, the counters are kept
+	 */
+	public void clear(){
+		for(int i=0; i<this.slots.length(); i++) this.slots.set(i, null);
+	}
+
+	private int set_start(long hash){
+		return ((int) (hash ^ (hash >>> 32)) & this.set_mask) * WAYS;
+	}
+
+	/**
+	 * A multiplicative hash of the selector IDs with the finalizer of MurmurHash3
+	 */
+	private static long hash(int[] example, int length){
+		long hash = length;
+		for(int i=0; i<length; i++) hash = (hash ^ example[i]) * 0x9E3779B97F4A7C15L;
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	private static boolean equals(int[] key, int[] example, int length){
+		if(key.length != length) return false;
+		for(int i=0; i<length; i++){
+			if(key[i] != example[i]) return false;
+		}
+		return true;
+	}
+
+	/////////////////////////////////////////////// STATISTICS //////////////////////////////////////////////
+	public long getHitCount(){
+		return this.hits.sum();
+	}
+
+	public long getMissCount(){
+		return this.misses.sum();
+	}
+
+	public long getEvictionCount(){
+		return this.evictions.sum();
+	}
+
+	/**
+	 * @return hits over lookups, 0 if no lookup
+	 */
+	public double getHitRate(){
+		long hits = this.hits.sum();
+		long lookups = hits + this.misses.sum();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+}
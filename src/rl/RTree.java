@@ -6,9 +6,11 @@
 package rl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  * RTree for organizing a large number of rules, i.e. association rules.
@@ -16,6 +18,11 @@ import java.util.Set;
  *
  */
 public class RTree {
+	/**
+	 * Minimum number of rules to build an RTree with many tasks
+	 */
+	public static final int PARALLEL_BUILD_MIN_RULES = 50000;
+	
 	private RNode root;
 	
 	////////////////////////////////////////////// COMMONS METHODS //////////////////////////////////////////////////
@@ -24,6 +31,139 @@ public class RTree {
 		this.root = new RNode();
 	}
 	
+	RNode getRoot(){
+		return this.root;
+	}
+	
+	/**
+	 * Build an RTree of the rules, inserted in the inverse order, with 'thread_count' tasks running on 'executor'.
+	 * </br>The rules are partitioned by their first inserted selector ID (the last one of the body): each partition is an independent
+	 * subtree of the root, built by one task. The order of the rules within a partition is kept,
+	 * so the tree is the same as the one built by 'insert_rule_inverse_order' for each rule in the order of the list.
+	 * @param rules
+	 * @param thread_count 1 to build the tree in the calling thread
+	 * @param executor
+	 * @return the tree
+	 * @throws LearningCancelledException if the calling thread is interrupted
+	 */
+	public static RTree build_inverse_order(List<RuleInfo> rules, int thread_count, ExecutorService executor){
+		RTree tree = new RTree();
+		if(thread_count < 2 || rules.size() < PARALLEL_BUILD_MIN_RULES){
+			for(RuleInfo rule : rules) tree.insert_rule_inverse_order(rule.body, rule);
+			return tree;
+		}
+		
+		// Group the rules by the last selector ID of the body by a counting sort, which keeps their order in each group
+		int max_selector_ID = -1;
+		for(RuleInfo rule : rules){
+			if(rule.body.length > 0) max_selector_ID = Math.max(max_selector_ID, rule.body[rule.body.length-1]);
+		}
+		int[] group_starts = new int[max_selector_ID+2];
+		for(RuleInfo rule : rules){
+			if(rule.body.length > 0) group_starts[rule.body[rule.body.length-1]+1]++;
+			else tree.insert_rule_inverse_order(rule.body, rule);	// stays at the root
+		}
+		int group_count = 0;
+		for(int s=0; s<=max_selector_ID; s++){
+			if(group_starts[s+1] > 0) group_count++;
+			group_starts[s+1] += group_starts[s];
+		}
+		RuleInfo[] grouped_rules = new RuleInfo[group_starts[max_selector_ID+1]];
+		int[] next = Arrays.copyOf(group_starts, max_selector_ID+1);
+		for(RuleInfo rule : rules){
+			if(rule.body.length > 0) grouped_rules[next[rule.body[rule.body.length-1]]++] = rule;
+		}
+		
+		// The subtrees are the children of the root in the increasing order of the selector IDs
+		RNode[] subtrees = new RNode[group_count];
+		int[] subtree_starts = new int[group_count+1];
+		for(int s=0, g=0; s<=max_selector_ID; s++){
+			if(group_starts[s+1] == group_starts[s]) continue;
+			subtrees[g] = new RNode(tree.root, s);
+			subtree_starts[g] = group_starts[s];
+			g++;
+		}
+		subtree_starts[group_count] = grouped_rules.length;
+		
+		thread_count = Math.min(thread_count, group_count);
+		ChunkScheduler scheduler = new ChunkScheduler(group_count, thread_count);
+		CancellationToken token = new CancellationToken();	// cancelled if the calling thread is interrupted
+		scheduler.setCancellationToken(token);
+		Runnable[] tasks = new Runnable[thread_count];
+		for(int i=0; i<thread_count; i++) tasks[i] = new BuildSubtreeTask(subtrees, subtree_starts, grouped_rules, scheduler);
+		LearnerExecutor.invoke_all(executor, tasks, token);
+		if(!scheduler.is_complete()) throw new LearningCancelledException(token, "rule tree");
+		
+		tree.root.children = new ArrayList<RNode>(Arrays.asList(subtrees));
+		return tree;
+	}
+	
+	private static class BuildSubtreeTask implements Runnable {
+		private final RNode[] subtrees;
+		private final int[] subtree_starts;
+		private final RuleInfo[] grouped_rules;
+		private final ChunkScheduler scheduler;
+		
+		BuildSubtreeTask(RNode[] subtrees, int[] subtree_starts, RuleInfo[] grouped_rules, ChunkScheduler scheduler){
+			this.subtrees = subtrees;
+			this.subtree_starts = subtree_starts;
+			this.grouped_rules = grouped_rules;
+			this.scheduler = scheduler;
+		}
+		
+		public void run(){
+			ChunkScheduler.Range range = new ChunkScheduler.Range();
+			while(this.scheduler.next(range)){
+				for(int g=range.start; g<range.end; g++){
+					for(int i=this.subtree_starts[g]; i<this.subtree_starts[g+1]; i++){
+						RuleInfo rule = this.grouped_rules[i];
+						// the last selector ID is the subtree root
+						insert_rule_inverse_order(this.subtrees[g], rule.body, rule.body.length-2, rule);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Build an RTree from rules sorted by SortedNlistBuilder.REVERSED_RECORD_COMPARATOR on their bodies, in one pass without searching
+	 * the children: the path of the previous rule is kept, a rule shares its longest common prefix and appends the other nodes.
+	 * The tree is the same as the one built by 'insert_rule_inverse_order' for each rule in the order of the list.
+	 * @param sorted_rules
+	 * @return the tree
+	 * @throws IllegalArgumentException if the rules are not sorted
+	 */
+	public static RTree build_sorted_inverse_order(List<RuleInfo> sorted_rules){
+		RTree tree = new RTree();
+		RNode[] path = new RNode[16];	// path[d] is the node at depth d, path[0] is the root
+		path[0] = tree.root;
+		int depth = 0;
+		for(RuleInfo rule : sorted_rules){
+			int[] body = rule.body;
+			if(path.length <= body.length) path = Arrays.copyOf(path, body.length*2);
+			
+			// the common prefix of the path and the reversed body
+			int common = 0;
+			while(common < depth && common < body.length && path[common+1].selectorID == body[body.length-1-common]) common++;
+			
+			for(depth=common; depth<body.length; depth++){
+				RNode parent = path[depth];
+				int selector_id = body[body.length-1-depth];
+				if(parent.children == null) parent.children = new ArrayList<RNode>();
+				else if(parent.children.size() > 0 && parent.children.get(parent.children.size()-1).selectorID >= selector_id){
+					throw new IllegalArgumentException("Rules are not sorted by the reversed bodies");
+				}
+				RNode node = new RNode(parent, selector_id);
+				parent.children.add(node);
+				path[depth+1] = node;
+			}
+			
+			RNode node = path[depth];
+			node.rule = (node.rule == null) ? rule : RuleComparator.select_better_rule(node.rule, rule);
+		}
+		return tree;
+	}
+	
 	/**
 	 * Free memory
 	 */
@@ -92,13 +232,19 @@ public class RTree {
 	 * @param rule reference of a rule information record
 	 */
 	public void insert_rule_inverse_order(int[] body, RuleInfo rule) {
-		RNode subNode = this.root;
+		insert_rule_inverse_order(this.root, body, body.length-1, rule);
+	}
+	
+	/**
+	 * Insert the selector IDs body[0..last] in the inverse order under 'subNode', the last node contains the reference to the rule
+	 */
+	private static void insert_rule_inverse_order(RNode subNode, int[] body, int last, RuleInfo rule) {
 		RNode newNode = null;
 		RNode child = null;
         boolean wasNotMerged;
         
         int selector_id, position, size, mid;
-        for(int i=body.length-1; i>-1; i--){	// ids in the body are inserted in the inverse order
+        for(int i=last; i>-1; i--){	// ids in the body are inserted in the inverse order
         	selector_id = body[i];
             if(subNode.children != null){
             	wasNotMerged = true;
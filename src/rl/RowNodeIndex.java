@@ -0,0 +1,143 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Mapping between training rows and the PPCTree nodes where their paths end.
+ * </br>The codes of the nodes are computed from the records by the same sort and sweep as SortedNlistBuilder, so they are the same as
+ * the codes of the Nlists of selectors built from the records (by a tree or not). Rows are kept in pre-order of their end nodes.
+ * </br>The rows covered by a node are the rows whose end nodes are in the sub-tree of the node, i.e. a contiguous run
+ * of rows starting at the pre-code of the node, so the rows covered by an Nlist are found by one binary search per node.
+ * Note: only Nlists whose nodes contain all selectors on their paths, e.g. from Supporter.create_nlist_conj, give exact row sets.
+ */
+public class RowNodeIndex {
+	private int[] rows;	// row indices in pre-order of their end nodes
+	private int[] pres;	// pre-code of the end node of rows[i]
+	private int[] poss;	// pos-code of the end node of rows[i]
+
+	// Sweep state, see SortedNlistBuilder
+	private int[] stack_ids = new int[16];
+	private int[] stack_pres = new int[16];
+	private int[] stack_first_rows = new int[16];	// position in 'rows' of the first row ending at the node
+	private int[] stack_row_counts = new int[16];	// number of rows ending at the node
+	private int depth = 0;
+	private int currentPreCode = 1;	// the root takes pre-code 0
+	private int currentPosCode = 0;
+
+	/**
+	 * @param records records of selector IDs, each record is in ascending order
+	 */
+	public RowNodeIndex(final int[][] records){
+		Integer[] sorted_rows = new Integer[records.length];
+		for(int i=0; i<records.length; i++) sorted_rows[i] = i;
+		Arrays.parallelSort(sorted_rows, new Comparator<Integer>(){
+			@Override
+			public int compare(Integer row1, Integer row2) {
+				return SortedNlistBuilder.REVERSED_RECORD_COMPARATOR.compare(records[row1], records[row2]);
+			}
+		});
+
+		this.rows = new int[records.length];
+		this.pres = new int[records.length];
+		this.poss = new int[records.length];
+		for(int i=0; i<sorted_rows.length; i++){
+			this.rows[i] = sorted_rows[i];
+			this.accept(records[this.rows[i]], i);
+		}
+		while(this.depth > 0) this.pop();
+
+		// Rows of empty records end at the root
+		int root_pos = this.currentPosCode;
+		for(int i=0; i<this.rows.length && records[this.rows[i]].length == 0; i++){
+			this.pres[i] = 0;
+			this.poss[i] = root_pos;
+		}
+
+		this.stack_ids = this.stack_pres = this.stack_first_rows = this.stack_row_counts = null;
+	}
+
+	private void accept(int[] record, int position){
+		// length of the common prefix of the current path and the reversed record
+		int common = 0, index = record.length-1;
+		while(common < this.depth && index > -1 && this.stack_ids[common] == record[index]){
+			common++;
+			index--;
+		}
+
+		// Nodes out of the common prefix are completed
+		while(this.depth > common) this.pop();
+
+		// New nodes for the rest of the record
+		if(this.stack_ids.length < record.length) this.grow_stack(record.length);
+		for(; index>-1; index--){
+			this.stack_ids[this.depth] = record[index];
+			this.stack_pres[this.depth] = this.currentPreCode;
+			this.stack_row_counts[this.depth] = 0;
+			this.currentPreCode++;
+			this.depth++;
+		}
+
+		// The record ends at the top node, identical records are consecutive
+		if(record.length > 0){
+			int top = record.length-1;
+			if(this.stack_row_counts[top] == 0) this.stack_first_rows[top] = position;
+			this.stack_row_counts[top]++;
+			this.pres[position] = this.stack_pres[top];
+		}
+	}
+
+	private void pop(){
+		this.depth--;
+		int first = this.stack_first_rows[this.depth];
+		int end = first + this.stack_row_counts[this.depth];
+		for(int i=first; i<end; i++) this.poss[i] = this.currentPosCode;
+		this.currentPosCode++;
+	}
+
+	private void grow_stack(int capacity){
+		this.stack_ids = Arrays.copyOf(this.stack_ids, capacity);
+		this.stack_pres = Arrays.copyOf(this.stack_pres, capacity);
+		this.stack_first_rows = Arrays.copyOf(this.stack_first_rows, capacity);
+		this.stack_row_counts = Arrays.copyOf(this.stack_row_counts, capacity);
+	}
+
+	public int row_count(){
+		return this.rows.length;
+	}
+
+	/**
+	 * @return all rows whose end nodes are in the sub-trees of the nodes of the Nlist, in pre-order of their end nodes
+	 */
+	public int[] covered_rows(INlist nlist){
+		int[] result = new int[nlist.supportCount()];
+		int count = 0;
+		Node node = new Node();
+		for(int i=0; i<nlist.size(); i++){
+			nlist.get(i, node);
+			for(int k=this.first_position(node.pre); k<this.rows.length && this.poss[k] <= node.pos; k++){
+				if(count == result.length) result = Arrays.copyOf(result, Math.max(16, count*2));
+				result[count++] = this.rows[k];
+			}
+		}
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * @return the first position whose pre-code is not less than 'pre'
+	 */
+	private int first_position(int pre){
+		int low = 0, high = this.pres.length;
+		while(low < high){
+			int mid = (low + high) >>> 1;
+			if(this.pres[mid] < pre) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+}
@@ -10,15 +10,17 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.DataFormatException;
 
 import prepr.Attribute;
 import prepr.CSVReader;
 import prepr.DataReader;
 import prepr.Selector;
+import prepr.SelectorEncoder;
+import rl.ExampleOrdering.ORDER_TYPES;
 import evaluations.HeuristicMetricFactory.METRIC_TYPES;
 
 /**
@@ -52,6 +54,7 @@ public abstract class RuleLearner {
 	 * List of attributes
 	 */
 	protected List<Attribute> attributes;	// attribute id = its index in the attribute list
+	private volatile SelectorEncoder selector_encoder = null;
 	
 	/**
 	 * List of atom selectors (flatten list)
@@ -77,6 +80,23 @@ public abstract class RuleLearner {
     
     protected String[] attribute_types;	// specify data type for each attribute in case CSV format
     
+    protected boolean single_pass = false;	// build records of selector IDs while preprocessing, no second read of the data source
+    protected boolean sort_based_nlists = false;	// build Nlists by sorting records of selector IDs, no PPCTree
+    protected boolean pair_prefilter = false;	// pre-filter candidates of the greedy rule search by pair support counts
+    protected PairCounter pair_counter;		// support counts of 2-selector-sets, for the pre-filter
+    protected ExecutorService executor;		// runs the parallel tasks of learning, the shared default one if null
+    protected ORDER_TYPES example_order = ORDER_TYPES.FILE;	// order in which examples are given to the search threads
+    protected LearningTelemetry telemetry = null;	// live progress of learning, not collected if null
+    protected CancellationToken cancellation_token = null;	// stops learning runs, they stop only on interrupts if null
+    
+    // buffers of the prediction threads for the selectorIDs of examples
+    private final ThreadLocal<int[]> id_buffers = new ThreadLocal<int[]>(){
+    	@Override
+    	protected int[] initialValue(){
+    		return new int[Math.max(1, attr_count)];
+    	}
+    };
+    
     public void declareAttributeTypes(String[] attribute_types){
     	this.attribute_types = attribute_types;
     }
@@ -149,6 +169,125 @@ public abstract class RuleLearner {
     public int[][] getSelectorIDRecords(){
     	return this.selectorID_records;
     }
+    
+    /**
+     * Single-pass mode keeps the encoded rows in memory while preprocessing, so the tree is built without
+     * reading the data source the second time (the data stream does not need to support reset()).
+     * </br>It costs 'attr_count' integers per row until the records of selector IDs are built. Default value is false.
+     * @param single_pass
+     */
+    public void setSinglePass(boolean single_pass){
+    	this.single_pass = single_pass;
+    }
+    
+    /**
+     * Build Nlists of selectors by sorting the records of selector IDs and sweeping them once, instead of building a PPCTree.
+     * </br>The Nlists are the same, the memory of the tree is saved. Default value is false.
+     * </br>Note: fetch_information_return_PPCtree always builds the tree. The records are sorted in memory, since they are
+     * kept for the search anyway, the external sort of PPCTree.create_Nlist_for_selectors_arr(Iterator, int) is not used.
+     * @param sort_based_nlists
+     */
+    public void setSortBasedNlists(boolean sort_based_nlists){
+    	this.sort_based_nlists = sort_based_nlists;
+    }
+    
+    /**
+     * Pre-filter and pre-rank candidate selectors in the rule growth of the greedy rule search by support counts of 2-selector-sets,
+     * so that the candidates which cannot improve the current best rule are skipped without Nlist intersections.
+     * The learned rules are the same. It takes effect only with a monotone metric, see MonotoneHeuristicMetric.
+     * </br>The pair support counts are counted on the PPCTree while fetching information (if set before), otherwise on the records
+     * of selector IDs when learning. Default value is false.
+     * @param pair_prefilter
+     */
+    public void setPairPrefilter(boolean pair_prefilter){
+    	this.pair_prefilter = pair_prefilter;
+    }
+    
+    /**
+     * Set the executor which runs the 'thread_count' parallel tasks of learning and rule filtering, e.g. a pool of platform threads
+     * shared by many learners or LearnerExecutor.virtual_threads(). The executor is not shut down by the learner.
+     * </br>Default value is null, LearnerExecutor.shared() is used.
+     * @param executor
+     */
+    public void setExecutor(ExecutorService executor){
+    	this.executor = executor;
+    }
+    
+    /**
+     * @return the executor given by setExecutor, or the shared default one
+     */
+    public ExecutorService getExecutor(){
+    	return this.executor != null ? this.executor : LearnerExecutor.shared();
+    }
+    
+    /**
+     * Set the order in which training examples are given to the rule search threads, see ExampleOrdering.
+     * </br>Rules of LORD and LORD-Loop are the same for all orders, rules of LORD* depend on the order. Default value is FILE.
+     * @param example_order
+     */
+    public void setExampleOrder(ORDER_TYPES example_order){
+    	this.example_order = example_order;
+    }
+    
+    /**
+     * @return positions of the training examples in the order set by setExampleOrder, null for the file order
+     */
+    protected int[] get_example_order(){
+    	return ExampleOrdering.get_order(this.example_order, this.selectorID_records, this.selector_nlists);
+    }
+    
+    /**
+     * Set the telemetry which collects the live progress of learning, see LearningTelemetry. Default value is null, no collection.
+     * @param telemetry
+     */
+    public void setTelemetry(LearningTelemetry telemetry){
+    	this.telemetry = telemetry;
+    }
+    
+    public LearningTelemetry getTelemetry(){
+    	return this.telemetry;
+    }
+    
+    /**
+     * Set the token to cancel or bound the learning runs, see CancellationToken. The token is checked by the discretization
+     * of 'fetch_information' and by the rule search and filter of 'learning'. Default value is null, runs stop only on interrupts.
+     * @param token
+     */
+    public void setCancellationToken(CancellationToken token){
+    	this.cancellation_token = token;
+    }
+    
+    public CancellationToken getCancellationToken(){
+    	return this.cancellation_token;
+    }
+    
+    /**
+     * @return the token set by setCancellationToken, or a new FAIL_FAST one which is cancelled when the learning thread is interrupted
+     */
+    protected CancellationToken get_run_token(){
+    	return this.cancellation_token != null ? this.cancellation_token : new CancellationToken();
+    }
+    
+    /**
+     * Throw if 'token' is cancelled and its policy is FAIL_FAST. With the PARTIAL policy, the run goes on with the results so far.
+     * @param token
+     * @param phase
+     * @throws LearningCancelledException
+     */
+    protected void check_cancellation(CancellationToken token, String phase){
+    	if(token.getPolicy() == CancellationToken.POLICY_TYPES.FAIL_FAST && token.is_cancelled()){
+    		throw new LearningCancelledException(token, phase);
+    	}
+    }
+    
+    /**
+     * Start the search phase of the telemetry, if set. The searches count to it through the context of 'create_search_context'.
+     * @param scheduler the scheduler of the 'thread_count' search threads
+     * @param rule_store the store receiving the found rules
+     */
+    protected void start_search_telemetry(ChunkScheduler scheduler, RuleStore rule_store){
+    	if(this.telemetry != null) this.telemetry.start_search(scheduler, rule_store, this.thread_count);
+    }
 	
     ///////////////////////////////////////////////MINING PHASE//////////////////////////////////////////////
     /**
@@ -169,14 +308,7 @@ public abstract class RuleLearner {
         
         times[0] = this.preprocessing();
         
-        PPCTree ppcTree = new PPCTree(); 
-        times[1] = this.construct_tree(ppcTree);
-        
-        long start = System.currentTimeMillis();
-        this.selector_nlists = ppcTree.create_Nlist_for_selectors_arr(this.selector_count);
-        this.selector_nlist_map = ppcTree.create_selector_Nlist_map(this.selector_nlists);
-        RuleSearcher.setSelectorNlists(this.selector_nlists);
-        times[2] = System.currentTimeMillis() - start;
+        this.create_selector_nlists(times);
         
         return times;
     }
@@ -194,14 +326,7 @@ public abstract class RuleLearner {
         
         times[0] = this.preprocessing();
         
-        PPCTree ppcTree = new PPCTree(); 
-        times[1] = this.construct_tree(ppcTree);
-        
-        long start = System.currentTimeMillis();
-        this.selector_nlists = ppcTree.create_Nlist_for_selectors_arr(this.selector_count);
-        this.selector_nlist_map = ppcTree.create_selector_Nlist_map(this.selector_nlists);
-        RuleSearcher.setSelectorNlists(this.selector_nlists);
-        times[2] = System.currentTimeMillis() - start;
+        this.create_selector_nlists(times);
         
         return times;
     }
@@ -224,7 +349,7 @@ public abstract class RuleLearner {
         
         long start = System.currentTimeMillis();
         this.selector_nlists = ppcTree.create_Nlist_for_selectors_arr(this.selector_count);
-        this.selector_nlist_map = ppcTree.create_selector_Nlist_map(this.selector_nlists);
+        this.selector_nlist_map = PPCTree.create_selector_Nlist_map(this.selector_nlists);
         RuleSearcher.setSelectorNlists(this.selector_nlists);
         times[2] = System.currentTimeMillis() - start;
         
@@ -249,13 +374,116 @@ public abstract class RuleLearner {
         
         long start = System.currentTimeMillis();
         this.selector_nlists = ppcTree.create_Nlist_for_selectors_arr(this.selector_count);
-        this.selector_nlist_map = ppcTree.create_selector_Nlist_map(this.selector_nlists);
+        this.selector_nlist_map = PPCTree.create_selector_Nlist_map(this.selector_nlists);
         RuleSearcher.setSelectorNlists(this.selector_nlists);
         times[2] = System.currentTimeMillis() - start;
         
         return ppcTree;
     }
     
+    /**
+     * Build Nlists of selectors from the data, by a PPCTree or by sorting records of selector IDs
+     * </br>Subclasses can override it to keep the tree or to use another Nlist implementation.
+     * @param times output: [1] build tree (or get records), [2] Nlist for each distinct selector
+     * @throws IOException
+     * @throws DataFormatException
+     */
+    protected void create_selector_nlists(long[] times) throws IOException, DataFormatException {
+    	long start;
+    	this.pair_counter = null;
+    	if(this.sort_based_nlists){
+    		times[1] = this.read_records();
+    		
+    		start = System.currentTimeMillis();
+    		this.selector_nlists = PPCTree.create_Nlist_for_selectors_arr(this.selectorID_records, this.selector_count);
+    	}else{
+    		PPCTree ppcTree = new PPCTree();
+    		times[1] = this.construct_tree(ppcTree);
+    		
+    		start = System.currentTimeMillis();
+    		this.selector_nlists = ppcTree.create_Nlist_for_selectors_arr(this.selector_count);
+    		if(this.pair_prefilter) this.pair_counter = this.count_pair_supportcounts(ppcTree);
+    	}
+    	this.selector_nlist_map = PPCTree.create_selector_Nlist_map(this.selector_nlists);
+    	RuleSearcher.setSelectorNlists(this.selector_nlists);
+    	times[2] = System.currentTimeMillis() - start;
+    }
+    
+    /**
+     * Count the pair support counts on the records if the pair pre-filter is set and they are not available yet.
+     * Called at the beginning of the learning phase.
+     */
+    protected void prepare_pair_prefilter(){
+    	if(this.pair_prefilter && this.pair_counter == null) this.pair_counter = this.count_pair_supportcounts(null);
+    }
+    
+    /**
+     * @return the state of the greedy searches of this learner, to give to its search threads by 'SearchContext.for_thread':
+     * its Nlists of selectors, its telemetry, and the pair support counts if the pair pre-filter is set
+     */
+    protected SearchContext create_search_context(){
+    	return new SearchContext(this.selector_nlists, this.pair_prefilter ? this.pair_counter : null, this.telemetry);
+    }
+    
+    /**
+     * @param ppcTree the tree to count on, null to count on the records of selector IDs
+     * @return support counts of 2-selector-sets, null if the counting is cancelled with the PARTIAL policy
+     * (partial counts would skip candidates wrongly)
+     * @throws LearningCancelledException if the counting is cancelled with the FAIL_FAST policy, e.g. the calling thread is interrupted
+     */
+    private PairCounter count_pair_supportcounts(PPCTree ppcTree){
+    	CancellationToken token = this.get_run_token();
+    	PairCounter pair_counter;
+    	if(ppcTree != null){
+    		pair_counter = ppcTree.count_pair_supportcounts(this.selector_count, this.thread_count, this.getExecutor(), token);
+    	}else{
+    		pair_counter = PPCTree.count_pair_supportcounts(this.selectorID_records, this.selector_count, this.thread_count,
+    														this.getExecutor(), token);
+    	}
+    	if(!token.is_cancelled()) return pair_counter;
+    	
+    	this.check_cancellation(token, "pair counting");
+    	return null;
+    }
+    
+    /**
+     * Store the preprocessing results (attributes, selectors, discretization, records of selector IDs and Nlists)
+     * to a binary snapshot file, see LearnerSnapshot. Require 'fetch_information' to have been called.
+     * @param file_name
+     * @return running time
+     * @throws IOException
+     */
+    public long store_snapshot(String file_name) throws IOException{
+    	long start = System.currentTimeMillis();
+    	LearnerSnapshot.store(this, file_name);
+    	return System.currentTimeMillis() - start;
+    }
+    
+    /**
+     * Restore the preprocessing results from a binary snapshot file written by 'store_snapshot',
+     * instead of calling 'fetch_information' on the data set again.
+     * @param file_name
+     * @return running time
+     * @throws IOException
+     * @throws DataFormatException if the file is not a valid snapshot
+     */
+    public long fetch_information_from_snapshot(String file_name) throws IOException, DataFormatException {
+    	long start = System.currentTimeMillis();
+    	
+    	LearnerSnapshot.load(this, file_name);
+    	this.pair_counter = null;
+    	this.train_filename = null;
+    	this.data_stream = null;
+    	
+    	this.classIDs = this.get_class_ids();	// all class IDs
+	    this.default_classID = this.get_default_class();	// default class ID
+	    
+	    this.selector_nlist_map = PPCTree.create_selector_Nlist_map(this.selector_nlists);
+	    RuleSearcher.setSelectorNlists(this.selector_nlists);
+	    
+    	return System.currentTimeMillis() - start;
+    }
+    
     public void write_nlists(String file_name) throws IOException{
     	BufferedWriter w = new BufferedWriter(new FileWriter(file_name));
     	for(INlist nlist : this.selector_nlists){
@@ -283,6 +511,8 @@ public abstract class RuleLearner {
     		if (this.attribute_types != null){
     			dr.set_attribute_datatypes(this.attribute_types);
     		}
+    		dr.set_encode_rows(this.single_pass);
+    		dr.setCancellationToken(this.cancellation_token);
     		dr.fetch_info(this.data_stream, this.target_attr_count, 0.001, false);
     	}else if (this.train_filename != null){
     		dr = DataReader.getDataReader(this.train_filename);
@@ -292,6 +522,8 @@ public abstract class RuleLearner {
     		if (this.attribute_types != null){
     			dr.set_attribute_datatypes(this.attribute_types);
     		}
+    		dr.set_encode_rows(this.single_pass);
+    		dr.setCancellationToken(this.cancellation_token);
     		dr.fetch_info(this.train_filename, this.target_attr_count, 0.001, false);
     	}else{
     		System.out.println("No train data");
@@ -321,6 +553,9 @@ public abstract class RuleLearner {
 		
 		this.classIDs = this.get_class_ids();	// all class IDs
 	    this.default_classID = this.get_default_class();	// default class ID
+	    
+	    // Records of selector IDs from the rows encoded while fetching information, null if not in single-pass mode
+	    this.selectorID_records = dr.build_selectorID_records();
 		
         return System.currentTimeMillis() - start;
     }
@@ -349,6 +584,7 @@ public abstract class RuleLearner {
 	
 	/**
 	 * Read the input data set the second time to build a tree to construct N-list structures
+	 * </br>In single-pass mode, the records of selector IDs built while preprocessing are inserted instead.
 	 * @return running time
 	 * @throws IOException
 	 * @throws DataFormatException 
@@ -356,19 +592,15 @@ public abstract class RuleLearner {
 	protected long construct_tree(PPCTree ppcTree) throws IOException, DataFormatException {
 		long start = System.currentTimeMillis();
 		
-		DataReader dr = null;
-		if(this.train_filename != null){
-			dr = DataReader.getDataReader(this.train_filename);
-			dr.bind_datasource(this.train_filename);
-		}else if (this.data_stream != null){
-			dr = new CSVReader();
-			this.data_stream.reset();	// ByteArrayInputStream can support reset()
-			dr.bind_datasource(this.data_stream);
-		}else{
-    		System.out.println("No train data");
-    		return 0;
-    	}
+		if(this.single_pass && this.selectorID_records != null){
+			// records are already sorted in ascending order of selector IDs
+			for(int[] id_record : this.selectorID_records) ppcTree.insert_record(id_record);
+			ppcTree.assignPrePosOrderCode();
+			return System.currentTimeMillis() - start;
+		}
 		
+		DataReader dr = this.bind_train_datasource();
+		if(dr == null) return 0;
 		int[][] result = new int[this.row_count][];
 		int index = 0;		
 		String[] value_record;
@@ -379,14 +611,12 @@ public abstract class RuleLearner {
 		
 		while((value_record = dr.next_record()) != null){
 			// convert value_record to a record of selectorIDs
-			result[index] = id_record = this.convert_values_to_selectorIDs(value_record, id_buffer);
-			index++;
-			
 			// selectors with higher frequencies have greater selector ID
 			// only support ascending sort, so the order of ids to insert to the tree is from right to left
 			// since id of a target selector is always greater than id of predicting selector
-			// sorting id_record will NOT blend the IDs of two kinds of selectors together	
-			Arrays.sort(id_record);
+			// sorting id_record will NOT blend the IDs of two kinds of selectors together
+			result[index] = id_record = this.convert_values_to_sorted_selectorIDs(value_record, id_buffer);
+			index++;
 			
 			// System.out.println(Arrays.toString(id_record));	// for testing
 			
@@ -402,6 +632,56 @@ public abstract class RuleLearner {
 	}
 	
 	
+	/**
+	 * Get the records of selector IDs without building a tree, reading the input data set the second time if not in single-pass mode
+	 * @return running time
+	 * @throws IOException
+	 * @throws DataFormatException 
+	 */
+	protected long read_records() throws IOException, DataFormatException {
+		long start = System.currentTimeMillis();
+		
+		if(this.single_pass && this.selectorID_records != null) return System.currentTimeMillis() - start;
+		
+		DataReader dr = this.bind_train_datasource();
+		if(dr == null) return 0;
+		
+		int[][] result = new int[this.row_count][];
+		int index = 0;
+		String[] value_record;
+		int[] id_buffer = new int[this.selector_count];
+		
+		while((value_record = dr.next_record()) != null){
+			result[index] = this.convert_values_to_sorted_selectorIDs(value_record, id_buffer);
+			index++;
+		}
+		
+		this.selectorID_records = result;
+		
+		return System.currentTimeMillis() - start;
+	}
+	
+	/**
+	 * Bind the train data source (file or stream) to a new DataReader to read it the second time
+	 * @return the DataReader, <b>null</b> if no train data
+	 * @throws IOException
+	 * @throws DataFormatException
+	 */
+	protected DataReader bind_train_datasource() throws IOException, DataFormatException {
+		DataReader dr = null;
+		if(this.train_filename != null){
+			dr = DataReader.getDataReader(this.train_filename);
+			dr.bind_datasource(this.train_filename);
+		}else if (this.data_stream != null){
+			dr = new CSVReader();
+			this.data_stream.reset();	// ByteArrayInputStream can support reset()
+			dr.bind_datasource(this.data_stream);
+		}else{
+    		System.out.println("No train data");
+    	}
+		return dr;
+	}
+	
 	/**
 	 * Convert input record of values to the corresponding record of selectorIDs
 	 * </br> This function is used when disjunction selectors are NOT supported,
@@ -409,22 +689,64 @@ public abstract class RuleLearner {
 	 * @return record of ids which is selectorID of atom selectors, the length of returned record can be smaller than that of the input record.
 	 */
 	public int[] convert_values_to_selectorIDs(String[] value_record, int[] id_buffer){
-		int count=0;
-		Selector s;
+		int count = this.encode_values(value_record, id_buffer);
 		
-		for(int i=0; i<value_record.length; i++){
-			s = this.attributes.get(i).getSelector(value_record[i]);
-			if(s != null && s.selectorID != Selector.INVALID_ID){
-				id_buffer[count] = s.selectorID;
-				count++;
-			}
-		}
+		int[] id_record = new int[count];
+		System.arraycopy(id_buffer, 0, id_record, 0, count);
+		
+		return id_record;
+	}
+	
+	/**
+	 * Write the selectorIDs of the input record of values into 'id_buffer', in the order of the attributes, without allocation
+	 * @param value_record record of values
+	 * @param id_buffer output, at least as long as 'value_record'
+	 * @return the number of selectorIDs written
+	 */
+	public int encode_values(String[] value_record, int[] id_buffer){
+		return this.getSelectorEncoder().encode(value_record, id_buffer);
+	}
+	
+	/**
+	 * Write the selectorIDs of the input record of values into 'id_buffer', increasingly sorted, without allocation
+	 * @param value_record record of values
+	 * @param id_buffer output, at least as long as 'value_record'
+	 * @return the number of selectorIDs written
+	 */
+	public int encode_values_sorted(String[] value_record, int[] id_buffer){
+		return this.getSelectorEncoder().encode_sorted(value_record, id_buffer);
+	}
+	
+	/**
+	 * The same as 'convert_values_to_selectorIDs', with the selectorIDs increasingly sorted
+	 * @param value_record record of values
+	 * @param id_buffer buffer, at least as long as 'value_record'
+	 * @return increasingly sorted selectorIDs of atom selectors
+	 */
+	public int[] convert_values_to_sorted_selectorIDs(String[] value_record, int[] id_buffer){
+		int count = this.encode_values_sorted(value_record, id_buffer);
 		
 		int[] id_record = new int[count];
 		System.arraycopy(id_buffer, 0, id_record, 0, count);
 		
 		return id_record;
 	}
+	
+	/**
+	 * @return the encoder of the attributes, built again if the attributes are replaced, e.g. by a snapshot
+	 */
+	public SelectorEncoder getSelectorEncoder(){
+		SelectorEncoder encoder = this.selector_encoder;
+		if(encoder == null || !encoder.is_compiled_from(this.attributes)){
+			synchronized(this){
+				encoder = this.selector_encoder;
+				if(encoder == null || !encoder.is_compiled_from(this.attributes)){
+					this.selector_encoder = encoder = new SelectorEncoder(this.attributes);
+				}
+			}
+		}
+		return encoder;
+	}
     
     ///////////////////////////////////////////// LEARNING PHASE //////////////////////////////////////////////
     /**
@@ -452,4 +774,113 @@ public abstract class RuleLearner {
      * @return the array of selector IDs of 'value_record', and the predicted class id in 'predicted_classID'
      */
     public abstract int[] predict_noclass(String[] value_record, IntHolder predicted_classID);
+    
+    /**
+     * Reentrant prediction from a record of values with a buffer of the calling thread, see predict_record(String[], boolean, int[])
+     * @param value_record a new example
+     * @param has_class whether the target class is at the last position of 'value_record'
+     * @return the prediction
+     */
+    public Prediction predict_record(String[] value_record, boolean has_class){
+    	int[] id_buffer = this.id_buffers.get();
+    	if(id_buffer.length < value_record.length){
+    		id_buffer = new int[value_record.length];
+    		this.id_buffers.set(id_buffer);
+    	}
+    	return this.predict_record(value_record, has_class, id_buffer);
+    }
+    
+    /**
+     * Reentrant prediction from a record of values: the same class as 'predict' and 'predict_noclass', but no shared state
+     * is written, so many threads can predict with one learned model at once.
+     * @param value_record a new example
+     * @param has_class whether the target class is at the last position of 'value_record'
+     * @param id_buffer buffer owned by the caller, at least as long as 'value_record'
+     * @return the prediction
+     */
+    public Prediction predict_record(String[] value_record, boolean has_class, int[] id_buffer){
+    	int count = this.encode_values_sorted(value_record, id_buffer);
+    	return this.predict_example(id_buffer, count, has_class);
+    }
+    
+    /**
+     * Reentrant prediction from a record of selectorIDs
+     * @param example selectorIDs of a new example, increasingly sorted in [0, count)
+     * @param count the number of selectorIDs of the example
+     * @param has_class whether the target selectorID is at position count-1
+     * @return the prediction
+     */
+    public abstract Prediction predict_example(int[] example, int count, boolean has_class);
+    
+    /**
+     * @param value_record a record of values
+     * @return true if the record has values for all attributes, i.e. its target class is at the last position
+     */
+    public boolean has_class(String[] value_record){
+    	return value_record.length >= this.attr_count;
+    }
+    
+    /**
+     * @param value_records records of values, each with its target class at the last position
+     * @return the target selectorID of each record, -1 if its target value is unknown
+     */
+    public int[] get_target_IDs(String[][] value_records){
+    	int[] target_IDs = new int[value_records.length];
+    	Attribute target_attr = this.attributes.get(this.attr_count-1);
+    	for(int i=0; i<value_records.length; i++){
+    		Selector s = target_attr.getSelector(value_records[i][this.attr_count-1]);
+    		target_IDs[i] = (s != null && s.selectorID != Selector.INVALID_ID) ? s.selectorID : -1;
+    	}
+    	return target_IDs;
+    }
+    
+    /**
+     * Predict a batch of records of values in parallel chunks with 'thread_count' tasks, see predict_record.
+     * </br>A record has its target class at the last position if it has values for all attributes (as read by a DataReader from a data set),
+     * otherwise it has no target class (as given to 'predict_noclass').
+     * @param value_records
+     * @return the predicted class ID of each record
+     */
+    public int[] predict_batch(String[][] value_records){
+    	return this.predict_batch(value_records, null, true);
+    }
+    
+    /**
+     * Predict a batch of records of selectorIDs in parallel chunks with 'thread_count' tasks, see predict_example.
+     * @param id_records records of selectorIDs in ascending order, each with its target class ID at the last position
+     * (as the records of getSelectorIDRecords)
+     * @return the predicted class ID of each record
+     */
+    public int[] predict_batch(int[][] id_records){
+    	return this.predict_batch(null, id_records, true);
+    }
+    
+    /**
+     * @param id_records records of selectorIDs in ascending order
+     * @param has_class whether the target class ID is at the last position of the records
+     * @return the predicted class ID of each record
+     */
+    public int[] predict_batch(int[][] id_records, boolean has_class){
+    	return this.predict_batch(null, id_records, has_class);
+    }
+    
+    private int[] predict_batch(String[][] value_records, int[][] id_records, boolean has_class){
+    	int record_count = (value_records != null) ? value_records.length : id_records.length;
+    	int[] predicted_classIDs = new int[record_count];
+    	
+    	int thread_count = Math.max(1, Math.min(this.thread_count, record_count));
+    	ChunkScheduler scheduler = new ChunkScheduler(record_count, thread_count);
+    	CancellationToken token = new CancellationToken();	// cancelled if the calling thread is interrupted
+    	scheduler.setCancellationToken(token);
+    	BatchPredictionThread[] tasks = new BatchPredictionThread[thread_count];
+    	for(int i=0; i<thread_count; i++){
+    		tasks[i] = new BatchPredictionThread(this, value_records, id_records, has_class, predicted_classIDs, scheduler);
+    	}
+    	
+    	if(thread_count == 1) tasks[0].run();	// not worth a hand-off to the executor
+    	else LearnerExecutor.invoke_all(this.getExecutor(), tasks, token);
+    	if(!scheduler.is_complete()) throw new LearningCancelledException(token, "prediction");
+    	
+    	return predicted_classIDs;
+    }
 }
@@ -0,0 +1,37 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+/**
+ * A read-only engine finding the covering rules of examples, built from the rules of an RTree.
+ * </br>All implementations select the same rules as the RTree, so they can replace each other (see InvertedRuleIndex.select_matcher).
+ * Lookups can be called from many threads.
+ */
+public interface RuleMatcher {
+
+	/**
+	 * @param tree
+	 * @return true if the matcher is built from 'tree'
+	 */
+	public boolean is_compiled_from(RTree tree);
+
+	public int rule_count();
+
+	/**
+	 * @param example an array of selector IDs, increasingly sorted in [0, length)
+	 * @param length the number of selector IDs to match, e.g. without the target selector id at the last position
+	 * @return the best covering rule in the order of RuleComparator.select_best_rule, null if no rule covers the example
+	 */
+	public RuleInfo find_best_covering_rule(int[] example, int length);
+
+	/**
+	 * The selection of RuleManager: the rule head is the class of the example, the greatest heuristic value, then the greatest p,
+	 * then the first found in the RTree. Rules with the heuristic value -Double.MAX_VALUE are never selected.
+	 * @param example a training example, increasingly sorted selector IDs with the target selector id at the last position
+	 * @return the best full covering rule, null if not found
+	 */
+	public RuleInfo find_full_covering_rule(int[] example);
+}
@@ -13,6 +13,7 @@ import java.util.Map;
 
 import prepr.Selector;
 import evaluations.HeuristicMetric;
+import evaluations.MonotoneHeuristicMetric;
 
 public class RuleSearcher {
 	private static INlist[] selector_nlists = null;
@@ -21,6 +22,35 @@ public class RuleSearcher {
 		RuleSearcher.selector_nlists = selector_nlists;
 	}
 	
+	/**
+	 * @return the context of the searches called without one: the Nlists given by setSelectorNlists, no pair pre-filter
+	 */
+	private static SearchContext default_context(){
+		return new SearchContext(RuleSearcher.selector_nlists, null, null);
+	}
+	
+	private static void count_join(SearchContext context, INlist nlist1, INlist nlist2){
+		LearningTelemetry telemetry = context.telemetry;
+		if(telemetry != null){
+			telemetry.nlist_joins.increment();
+			telemetry.nodes_scanned.add(nlist1.size() + nlist2.size());
+		}
+	}
+	
+	private static void count_hit(SearchContext context, int[] k_selector_IDs){
+		LearningTelemetry telemetry = context.telemetry;
+		if(telemetry != null && k_selector_IDs.length > 1) telemetry.nlist_cache_hits.increment();	// Nlists of single selectors are given
+	}
+	
+	private static void count_search(SearchContext context, Map<String, INlist> nlist_db, Map<String, INlist> selector_nlist_map){
+		LearningTelemetry telemetry = context.telemetry;
+		if(telemetry != null){
+			telemetry.searches.increment();
+			telemetry.count_thread_search(context.thread_index);
+			telemetry.nlist_db_entries.add(nlist_db.size() - selector_nlist_map.size());
+		}
+	}
+	
 	/**
      * Remove removed_ID from array array_IDs, return new array
      * @param selector_IDs
@@ -75,25 +105,30 @@ public class RuleSearcher {
      * </br> Some Nlists of the selector ID sets may be already in nlist_db.
      * @param nlist_db the data base of calculated Nlist of selector ID sets
      * @param k_selector_IDs
+     * @param context state of the searches of the learner, e.g. its telemetry
      * @return Nlist (Nodelist object) of the input selectorID set
      */
-    protected static INlist calculate_nlist_cmnsub(Map<String, INlist> nlist_db, int[] k_selector_IDs){
+    protected static INlist calculate_nlist_cmnsub(Map<String, INlist> nlist_db, int[] k_selector_IDs, SearchContext context){
        	String key = Arrays.toString(k_selector_IDs);
        	
        	INlist nlist = nlist_db.get(key);
     	
-    	if (nlist != null) return nlist;
+    	if (nlist != null){
+    		count_hit(context, k_selector_IDs);
+    		return nlist;
+    	}
     	
     	// calculate Nlist of (k-1)_selector_IDs which shares the first (k-1) IDs of k_selector_IDs
     	int[] sub_selector_IDs = new int[k_selector_IDs.length-1];
     	System.arraycopy(k_selector_IDs, 0, sub_selector_IDs, 0, sub_selector_IDs.length);
-    	INlist nlist1 = calculate_nlist_cmnsub(nlist_db, sub_selector_IDs);
+    	INlist nlist1 = calculate_nlist_cmnsub(nlist_db, sub_selector_IDs, context);
     	
     	// calculate Nlist of (k-1)_selector_IDs which shares the first (k-2) IDs and the last ID of k_selector_IDs
     	sub_selector_IDs[sub_selector_IDs.length-1] = k_selector_IDs[k_selector_IDs.length-1];
-    	INlist nlist2 = calculate_nlist_cmnsub(nlist_db, sub_selector_IDs);
+    	INlist nlist2 = calculate_nlist_cmnsub(nlist_db, sub_selector_IDs, context);
     	
     	nlist = Supporter.create_nlist(nlist1, nlist2);
+    	count_join(context, nlist1, nlist2);
     	
     	nlist_db.put(key, nlist);
     	return nlist;
@@ -106,24 +141,29 @@ public class RuleSearcher {
      * </br> Some Nlists of the selector ID sets may be already in nlist_db.
      * @param nlist_db the data base of calculated Nlist of selector ID sets
      * @param k_selector_IDs nlist_db the data base of calculated Nlist of selector ID sets
+     * @param context state of the searches of the learner, e.g. its Nlists of selectors
      * @return Nlist (Nodelist object) of the input selectorID set
      */
-    protected static INlist calculate_nlist_appsup(Map<String, INlist> nlist_db, int[] k_selector_IDs){
+    protected static INlist calculate_nlist_appsup(Map<String, INlist> nlist_db, int[] k_selector_IDs, SearchContext context){
        	String key = Arrays.toString(k_selector_IDs);
        	
        	INlist nlist = nlist_db.get(key);
     	
-    	if (nlist != null) return nlist;
+    	if (nlist != null){
+    		count_hit(context, k_selector_IDs);
+    		return nlist;
+    	}
     	
     	// calculate Nlist of (k-1)_selector_IDs which shares the first (k-1) IDs of k_selector_IDs
     	int[] sub_selector_IDs = new int[k_selector_IDs.length-1];
     	System.arraycopy(k_selector_IDs, 0, sub_selector_IDs, 0, sub_selector_IDs.length);
-    	INlist nlist1 = calculate_nlist_appsup(nlist_db, sub_selector_IDs);
+    	INlist nlist1 = calculate_nlist_appsup(nlist_db, sub_selector_IDs, context);
     	
     	// get Nlist of the last selector ID of k_selector_IDs
-    	INlist nlist2 = selector_nlists[k_selector_IDs[sub_selector_IDs.length]];
+    	INlist nlist2 = context.selector_nlists[k_selector_IDs[sub_selector_IDs.length]];
     	
     	nlist = Supporter.create_nlist(nlist1, nlist2);
+    	count_join(context, nlist1, nlist2);
     	
     	nlist_db.put(key, nlist);
     	return nlist;
@@ -134,37 +174,43 @@ public class RuleSearcher {
      * </br> Some Nlists of the selector ID sets may be already in nlist_db.
      * @param nlist_db the data base of calculated Nlist of selector ID sets
      * @param k_selector_IDs
+     * @param context state of the searches of the learner, e.g. its Nlists of selectors
      * @return Nlist (Nodelist object) of the input selectorID set
      */
-    protected static INlist calculate_nlist_hyprid(Map<String, INlist> nlist_db, int[] k_selector_IDs){
+    protected static INlist calculate_nlist_hyprid(Map<String, INlist> nlist_db, int[] k_selector_IDs, SearchContext context){
        	String key = Arrays.toString(k_selector_IDs);
        	
     	INlist nlist = nlist_db.get(key);
     	
-    	if (nlist != null) return nlist;
+    	if (nlist != null){
+    		count_hit(context, k_selector_IDs);
+    		return nlist;
+    	}
     	
     	// calculate Nlist of (k-1)_selector_IDs which shares the first (k-1) IDs of k_selector_IDs
     	int[] sub_selector_IDs = new int[k_selector_IDs.length-1];
     	System.arraycopy(k_selector_IDs, 0, sub_selector_IDs, 0, sub_selector_IDs.length);
-    	INlist nlist1 = calculate_nlist_hyprid(nlist_db, sub_selector_IDs);
+    	INlist nlist1 = calculate_nlist_hyprid(nlist_db, sub_selector_IDs, context);
     	
     	// get Nlist of (k-1)_selector_IDs which shares the first (k-2) IDs and the last ID of k_selector_IDs
     	// or get Nlist of the last selector ID of k_selector_IDs
     	sub_selector_IDs[sub_selector_IDs.length-1] = k_selector_IDs[k_selector_IDs.length-1];
     	INlist nlist2 = nlist_db.get(Arrays.toString(sub_selector_IDs));
     	if(nlist2 == null){
-    		nlist2 = selector_nlists[k_selector_IDs[sub_selector_IDs.length]];
+    		nlist2 = context.selector_nlists[k_selector_IDs[sub_selector_IDs.length]];
     	}
     	
     	nlist = Supporter.create_nlist(nlist1, nlist2);
+    	count_join(context, nlist1, nlist2);
     	
     	nlist_db.put(key, nlist);
     	return nlist;
     }
     
-    protected static INlist calculate_nlist_direct(Map<String, INlist> nlist_db, int[] body_IDs, int class_ID){    	
-    	INlist nlist = Supporter.create_nlist(nlist_db.get(Arrays.toString(body_IDs)),
-													RuleSearcher.selector_nlists[class_ID]);
+    protected static INlist calculate_nlist_direct(Map<String, INlist> nlist_db, int[] body_IDs, int class_ID, SearchContext context){    	
+    	INlist body_nlist = nlist_db.get(Arrays.toString(body_IDs));
+    	INlist nlist = Supporter.create_nlist(body_nlist, context.selector_nlists[class_ID]);
+    	count_join(context, body_nlist, context.selector_nlists[class_ID]);
     	
     	int[] rule = new int[body_IDs.length+1];
 		System.arraycopy(body_IDs, 0, rule, 0, body_IDs.length);
@@ -550,6 +596,7 @@ public class RuleSearcher {
 																HeuristicMetric metric,
 																double[] arguments){
 		Map<String, INlist> nlist_db = new HashMap<String, INlist>(selector_nlist_map);
+		SearchContext context = default_context();
     	
     	RuleInfo current_best_rule = new RuleInfo();
     	current_best_rule.body = new int[0];
@@ -569,7 +616,8 @@ public class RuleSearcher {
 																	nlist_db,
 																	remain_selector_IDs,
 																	class_ID,
-																	chosen_ID);
+																	chosen_ID,
+																	context);
     		if(next_best_rule == null) break;
     		
     		remain_selector_IDs = get_remain_IDs(remain_selector_IDs, chosen_ID.value);
@@ -587,7 +635,8 @@ public class RuleSearcher {
 																	metric,
 																	nlist_db,
 																	class_ID,
-																	chosen_ID);
+																	chosen_ID,
+																	context);
     		if(next_best_rule == null) break;
     		
     		current_best_rule = next_best_rule;
@@ -612,6 +661,25 @@ public class RuleSearcher {
 														int class_ID,
 														HeuristicMetric metric,
 														double[] arguments){
+		return search_for_greedy_best_rule(selector_nlist_map, body_selector_IDs, class_ID, metric, arguments, default_context());
+	}
+	
+	/**
+	 * The same as search_for_greedy_best_rule, with the state of the searches of a learner
+	 * @param selector_nlist_map
+	 * @param body_selector_IDs
+	 * @param class_ID
+	 * @param metric
+	 * @param arguments
+	 * @param context
+	 * @return
+	 */
+	public static RuleInfo search_for_greedy_best_rule(Map<String, INlist> selector_nlist_map,
+														int[] body_selector_IDs,
+														int class_ID,
+														HeuristicMetric metric,
+														double[] arguments,
+														SearchContext context){
 		Map<String, INlist> nlist_db = new HashMap<String, INlist>(selector_nlist_map);
     	
     	RuleInfo current_best_rule = new RuleInfo();
@@ -629,7 +697,8 @@ public class RuleSearcher {
 																	nlist_db,
 																	remain_selector_IDs,
 																	class_ID,
-																	chosen_ID);
+																	chosen_ID,
+																	context);
     		if(next_best_rule == null) break;
     		
     		remain_selector_IDs = get_remain_IDs(remain_selector_IDs, chosen_ID.value);
@@ -645,12 +714,14 @@ public class RuleSearcher {
 																	metric,
 																	nlist_db,
 																	class_ID,
-																	chosen_ID);
+																	chosen_ID,
+																	context);
     		if(next_best_rule == null) break;
     		
     		current_best_rule = next_best_rule;
     	}
     	    	
+    	count_search(context, nlist_db, selector_nlist_map);
     	return current_best_rule;
 	}
 	
@@ -669,6 +740,25 @@ public class RuleSearcher {
 														int class_ID,
 														HeuristicMetric metric,
 														double[] arguments){
+		return search_for_greedy_best_rule_loop(selector_nlist_map, body_selector_IDs, class_ID, metric, arguments, default_context());
+	}
+	
+	/**
+	 * The same as search_for_greedy_best_rule_loop, with the state of the searches of a learner
+	 * @param selector_nlist_map
+	 * @param body_selector_IDs
+	 * @param class_ID
+	 * @param metric
+	 * @param arguments
+	 * @param context
+	 * @return
+	 */
+	public static RuleInfo search_for_greedy_best_rule_loop(Map<String, INlist> selector_nlist_map,
+														int[] body_selector_IDs,
+														int class_ID,
+														HeuristicMetric metric,
+														double[] arguments,
+														SearchContext context){
 		Map<String, INlist> nlist_db = new HashMap<String, INlist>(selector_nlist_map);
     	
     	RuleInfo current_best_rule = new RuleInfo();
@@ -692,7 +782,8 @@ public class RuleSearcher {
     																	nlist_db,
     																	remain_selector_IDs,
     																	class_ID,
-    																	chosen_ID);
+    																	chosen_ID,
+    																	context);
         		if(next_best_rule == null){
         			state++;
         			break;
@@ -702,7 +793,10 @@ public class RuleSearcher {
         		current_best_rule = next_best_rule;
         		state=0;
         	}
-        	if(state > 1 || current_best_rule.body.length < 3) return current_best_rule;
+        	if(state > 1 || current_best_rule.body.length < 3){
+        		count_search(context, nlist_db, selector_nlist_map);
+        		return current_best_rule;
+        	}
         	
         	// Prune rule
         	while(true){
@@ -711,7 +805,8 @@ public class RuleSearcher {
     																	metric,
     																	nlist_db,
     																	class_ID,
-    																	chosen_ID);
+    																	chosen_ID,
+    																	context);
         		if(next_best_rule == null) {
         			state++;
         			break;
@@ -720,7 +815,10 @@ public class RuleSearcher {
         		current_best_rule = next_best_rule;
         		state=0;
         	}   	
-        	if(state > 1) return current_best_rule;
+        	if(state > 1){
+        		count_search(context, nlist_db, selector_nlist_map);
+        		return current_best_rule;
+        	}
     	}
 	}
 	
@@ -741,6 +839,7 @@ public class RuleSearcher {
 															HeuristicMetric metric,
 															double[] arguments){
 		Map<String, INlist> nlist_db = new HashMap<String, INlist>(selector_nlist_map);
+		SearchContext context = default_context();
     	
     	RuleInfo current_best_rule = new RuleInfo();
     	current_best_rule.body = new int[0];
@@ -766,7 +865,8 @@ public class RuleSearcher {
     																	nlist_db,
     																	remain_selector_IDs,
     																	class_ID,
-    																	chosen_ID);
+    																	chosen_ID,
+    																	context);
         		if(next_best_rule == null){
         			state++;
         			break;
@@ -779,6 +879,7 @@ public class RuleSearcher {
 
         	if(state > 1 || current_best_rule.body.length < 3){
         		current_best_rule.id = n_iteration; // borrow the property 'id' to track the number of iterations passed
+        		count_search(context, nlist_db, selector_nlist_map);
         		return current_best_rule;
         	}
         	
@@ -789,7 +890,8 @@ public class RuleSearcher {
     																	metric,
     																	nlist_db,
     																	class_ID,
-    																	chosen_ID);
+    																	chosen_ID,
+    																	context);
         		if(next_best_rule == null) {
         			state++;
         			break;
@@ -801,6 +903,7 @@ public class RuleSearcher {
         	
         	if(state > 1){
         		current_best_rule.id = n_iteration; // borrow the property 'id' to track the number of iterations passed
+        		count_search(context, nlist_db, selector_nlist_map);
         		return current_best_rule;
         	}
     	}
@@ -814,6 +917,7 @@ public class RuleSearcher {
      * @param remain_selector_IDs
      * @param class_ID
      * @param chosen_ID output parameter, the best selector ID to extend the current best rule
+     * @param context state of the searches of the learner, e.g. its pair support counts
      * @return the next best rule with the chosen selector ID, 
      * null returned if not found a selector ID so that the current rule is improved
      */
@@ -823,15 +927,23 @@ public class RuleSearcher {
 					    									Map<String, INlist> nlist_db,
 					    									int[] remain_selector_IDs,
 					    									int class_ID,
-					    									IntHolder chosen_ID){
+					    									IntHolder chosen_ID,
+					    									SearchContext context){
+    	PairCounter pair_counter = context.pair_counter;
+    	if(pair_counter != null && metric instanceof MonotoneHeuristicMetric &&
+    			((MonotoneHeuristicMetric) metric).is_monotone(arguments[6])){
+    		return get_extended_current_best_rule_prefiltered(current_best_rule, arguments, metric, nlist_db,
+    															remain_selector_IDs, class_ID, chosen_ID, context);
+    	}
+    	
     	RuleInfo next_best_rule = null;
     	int[] current_body = current_best_rule.body;
     	
 		for(int id : remain_selector_IDs){
 			int[] extended_body = get_sorted_array_IDs(current_body, id);
 			
-    		arguments[0] = calculate_nlist_hyprid(nlist_db, extended_body).supportCount(); 	// n+p
-    		arguments[1] = calculate_nlist_direct(nlist_db, extended_body, class_ID).supportCount();	// p
+    		arguments[0] = calculate_nlist_hyprid(nlist_db, extended_body, context).supportCount(); 	// n+p
+    		arguments[1] = calculate_nlist_direct(nlist_db, extended_body, class_ID, context).supportCount();	// p
     		arguments[2] = arguments[0] - arguments[1];		// n
     		
     		double heuristic_value = metric.evaluate(arguments);
@@ -848,20 +960,90 @@ public class RuleSearcher {
 		return next_best_rule;
     }
     
+    /**
+     * The same as get_extended_current_best_rule, with the same result, but candidates are pre-filtered and pre-ranked by pair support counts:
+     * </br>1. p of the extended rule is at most p_max = min(sup(id, class), sup(id, s) for s in the current body, p of the current rule),
+     * so with a monotone metric, its heuristic value is at most h_max = evaluate(p = n+p = p_max, n = 0).
+     * </br>2. Candidates are evaluated in descending order of p_max, so a good rule is found early and the bound (h_max, p_max) skips
+     * the candidates which cannot beat it, without any Nlist intersection.
+     * </br>3. Among candidates with the same (heuristic value, p), the smallest selector ID is chosen as in the ascending scan.
+     */
+    private static RuleInfo get_extended_current_best_rule_prefiltered(RuleInfo current_best_rule,
+																	double[] arguments,
+																	HeuristicMetric metric,
+																	Map<String, INlist> nlist_db,
+																	int[] remain_selector_IDs,
+																	int class_ID,
+																	IntHolder chosen_ID,
+																	SearchContext context){
+    	PairCounter pair_counter = context.pair_counter;
+    	RuleInfo next_best_rule = null;
+    	int[] current_body = current_best_rule.body;
+    	
+    	// Rank candidates: key = (-p_max, id), the high bits hold the complement of p_max
+    	long[] ranked_candidates = new long[remain_selector_IDs.length];
+    	int candidate_count = 0;
+    	for(int id : remain_selector_IDs){
+    		int p_max = pair_counter.get(id, class_ID);
+    		for(int selector_id : current_body) p_max = Math.min(p_max, pair_counter.get(id, selector_id));
+    		if(current_body.length > 0) p_max = Math.min(p_max, (int) current_best_rule.p);
+    		ranked_candidates[candidate_count++] = ((long)(Integer.MAX_VALUE - p_max) << 32) | id;
+    	}
+    	Arrays.sort(ranked_candidates, 0, candidate_count);
+    	
+    	for(int i=0; i<candidate_count; i++){
+    		int id = (int) ranked_candidates[i];
+    		int p_max = Integer.MAX_VALUE - (int)(ranked_candidates[i] >>> 32);
+    		
+    		// Optimistic heuristic value of the extended rule
+    		arguments[0] = p_max;
+    		arguments[1] = p_max;
+    		arguments[2] = 0;
+    		double max_heuristic_value = metric.evaluate(arguments);
+    		
+    		if(max_heuristic_value < current_best_rule.heuristic_value) continue;
+    		if(max_heuristic_value == current_best_rule.heuristic_value){
+    			if(p_max < current_best_rule.p) continue;
+    			// an exact tie only replaces a chosen candidate with a greater selector ID
+    			if(p_max == current_best_rule.p && (next_best_rule == null || id > chosen_ID.value)) continue;
+    		}
+    		
+    		int[] extended_body = get_sorted_array_IDs(current_body, id);
+			
+    		arguments[0] = calculate_nlist_hyprid(nlist_db, extended_body, context).supportCount(); 	// n+p
+    		arguments[1] = calculate_nlist_direct(nlist_db, extended_body, class_ID, context).supportCount();	// p
+    		arguments[2] = arguments[0] - arguments[1];		// n
+    		
+    		double heuristic_value = metric.evaluate(arguments);
+    		
+    		if (current_best_rule.heuristic_value < heuristic_value || 
+    				(current_best_rule.heuristic_value == heuristic_value && 
+    				(current_best_rule.p < arguments[1] ||
+    				(current_best_rule.p == arguments[1] && next_best_rule != null && id < chosen_ID.value)))){
+    			next_best_rule = new RuleInfo(arguments[2], arguments[1], arguments[0], extended_body, class_ID, heuristic_value);
+    			current_best_rule = next_best_rule;
+    			chosen_ID.value = id;
+    		}
+    	}
+    	
+    	return next_best_rule;
+    }
+    
     private static RuleInfo get_pruned_current_best_rule(RuleInfo current_best_rule,
 													double[] arguments,
 													HeuristicMetric metric,
 													Map<String, INlist> nlist_db,
 													int class_ID,
-													IntHolder chosen_ID){
+													IntHolder chosen_ID,
+													SearchContext context){
 		RuleInfo next_best_rule = null;
 		int[] body_selector_IDs = current_best_rule.body.clone();
 		
 		for(int id : body_selector_IDs){
 			int[] pruned_body = get_remain_IDs(body_selector_IDs, id);
 			
-			arguments[0] = calculate_nlist_hyprid(nlist_db, pruned_body).supportCount(); 		// n+p
-			arguments[1] = calculate_nlist_direct(nlist_db, pruned_body, class_ID).supportCount();	// p
+			arguments[0] = calculate_nlist_hyprid(nlist_db, pruned_body, context).supportCount(); 		// n+p
+			arguments[1] = calculate_nlist_direct(nlist_db, pruned_body, class_ID, context).supportCount();	// p
 			arguments[2] = arguments[0] - arguments[1];		// n
 			
 			double heuristic_value = metric.evaluate(arguments);
@@ -0,0 +1,144 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free set of rules shared by threads, a rule is identified by its body (array of selector IDs) and its head.
+ * </br>It replaces maps keyed by RuleInfo.signature(), no string is created:
+ * </br> + a 64-bit hash of the body and the head is computed once per insertion and kept in the entry,
+ * </br> + rules of the same hash are compared exactly on the head and the body,
+ * </br> + a new rule is prepended to the chain of its bucket by one CAS, a failed CAS re-checks the chain, so a rule is stored once.
+ * </br>The number of buckets is fixed at construction, chains grow if there are many more rules than expected.
+ * Iteration is weakly consistent, it sees all rules inserted before it starts.
+ */
+public class RuleStore implements Iterable<RuleInfo> {
+	private final AtomicReferenceArray<Entry> buckets;
+	private final int mask;
+	private final LongAdder size = new LongAdder();
+
+	private static final class Entry {
+		final long hash;
+		final RuleInfo rule;
+		final Entry next;
+
+		Entry(long hash, RuleInfo rule, Entry next){
+			this.hash = hash;
+			this.rule = rule;
+			this.next = next;
+		}
+	}
+
+	/**
+	 * @param expected_size the expected number of rules, e.g. the number of examples for a rule per example
+	 */
+	public RuleStore(int expected_size){
+		int capacity = 16;
+		while(capacity < (expected_size >> 1) && capacity < (1 << 30)) capacity <<= 1;
+		this.buckets = new AtomicReferenceArray<Entry>(capacity);
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * @return 64-bit hash of a rule
+	 */
+	public static long hash(int[] body, int head_id){
+		long h = 0x9E3779B97F4A7C15L ^ head_id;
+		for(int id : body){
+			h = (h ^ id) * 0xBF58476D1CE4E5B9L;
+			h ^= h >>> 31;
+		}
+		h = (h ^ body.length) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 29);
+	}
+
+	/**
+	 * Add the rule if no rule with the same body and head is in the store
+	 * @param rule
+	 * @return the stored rule with the same body and head as 'rule', it is 'rule' itself if 'rule' is newly added
+	 */
+	public RuleInfo add(RuleInfo rule){
+		long hash = hash(rule.body, rule.headID);
+		int index = (int) (hash ^ (hash >>> 32)) & this.mask;
+
+		Entry head, e;
+		while(true){
+			head = this.buckets.get(index);
+			for(e = head; e != null; e = e.next){
+				if(e.hash == hash && e.rule.headID == rule.headID && Arrays.equals(e.rule.body, rule.body)) return e.rule;
+			}
+			if(this.buckets.compareAndSet(index, head, new Entry(hash, rule, head))){
+				this.size.increment();
+				return rule;
+			}
+		}
+	}
+
+	/**
+	 * @return the stored rule with the body and the head, null if not found
+	 */
+	public RuleInfo get(int[] body, int head_id){
+		long hash = hash(body, head_id);
+		int index = (int) (hash ^ (hash >>> 32)) & this.mask;
+		for(Entry e = this.buckets.get(index); e != null; e = e.next){
+			if(e.hash == hash && e.rule.headID == head_id && Arrays.equals(e.rule.body, body)) return e.rule;
+		}
+		return null;
+	}
+
+	public int size(){
+		return this.size.intValue();
+	}
+
+	/**
+	 * @return a new list of all rules in the store
+	 */
+	public List<RuleInfo> values(){
+		List<RuleInfo> rules = new ArrayList<RuleInfo>(this.size());
+		for(RuleInfo rule : this) rules.add(rule);
+		return rules;
+	}
+
+	@Override
+	public Iterator<RuleInfo> iterator() {
+		return new Iterator<RuleInfo>(){
+			private int index = -1;
+			private Entry next = null;
+
+			{ this.advance(); }
+
+			private void advance(){
+				if(this.next != null) this.next = this.next.next;
+				while(this.next == null && ++this.index < buckets.length()) this.next = buckets.get(this.index);
+			}
+
+			@Override
+			public boolean hasNext() {
+				return this.next != null;
+			}
+
+			@Override
+			public RuleInfo next() {
+				if(this.next == null) throw new NoSuchElementException();
+				RuleInfo rule = this.next.rule;
+				this.advance();
+				return rule;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+/**
+ * Per-learner state of the greedy rule searches, given by a learner to its search threads and passed to RuleSearcher.
+ * </br>Learners sharing a JVM (and an executor) each have their own context, so the searches of one learner never read
+ * the Nlists or the pair support counts of another one, which are built for other selector IDs,
+ * and count only to the telemetry of their own learner.
+ */
+public class SearchContext {
+	final INlist[] selector_nlists;
+	final PairCounter pair_counter;
+	final LearningTelemetry telemetry;
+	final int thread_index;
+
+	/**
+	 * @param selector_nlists Nlists of the selectors of the learner, indexed by selector ID
+	 * @param pair_counter support counts of pairs of the selectors of the learner, to pre-filter and pre-rank candidates
+	 * in the rule growth, null to disable. It takes effect only with a metric which is monotone for the given parameter,
+	 * see MonotoneHeuristicMetric. The found rules are the same as without the pre-filter.
+	 * @param telemetry receives the counts of Nlist intersections, scanned nodes and Nlist database hits of the searches, null to disable
+	 */
+	public SearchContext(INlist[] selector_nlists, PairCounter pair_counter, LearningTelemetry telemetry){
+		this(selector_nlists, pair_counter, telemetry, -1);
+	}
+
+	private SearchContext(INlist[] selector_nlists, PairCounter pair_counter, LearningTelemetry telemetry, int thread_index){
+		this.selector_nlists = selector_nlists;
+		this.pair_counter = pair_counter;
+		this.telemetry = telemetry;
+		this.thread_index = thread_index;
+	}
+
+	/**
+	 * @param thread_index index of a search thread in [0, thread_count)
+	 * @return the same context for one search thread, its searches are also counted per thread by the telemetry
+	 */
+	public SearchContext for_thread(int thread_index){
+		return new SearchContext(this.selector_nlists, this.pair_counter, this.telemetry, thread_index);
+	}
+}
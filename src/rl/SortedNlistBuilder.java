@@ -0,0 +1,268 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Build Nlists of selectors directly from records of selector IDs, without materializing a PPCTree.
+ * </br>A path of the PPCTree is a record read from right to left (descending selector IDs), and children are in ascending order of selector IDs.
+ * So the pre-order traverse of the tree is exactly the lexicographic order of the reversed records.
+ * After sorting the records in that order, one stack-based sweep gives the same pre-codes, pos-codes and support counts as the tree does.
+ * </br>Nodes are emitted when they are popped (post-order). Since nodes of the same selector are never on the same path,
+ * their post-order is the same as their pre-order, so each Nlist is filled in the expected order.
+ */
+public class SortedNlistBuilder {
+	/**
+	 * Compare two records (ascending order of selector IDs) by the lexicographic order of their reversed forms.
+	 * </br>A record which is a prefix of the other is smaller, i.e. an ancestor comes before its descendants.
+	 */
+	public static final Comparator<int[]> REVERSED_RECORD_COMPARATOR = new Comparator<int[]>(){
+		@Override
+		public int compare(int[] a, int[] b) {
+			int i = a.length-1, j = b.length-1;
+			while(i>-1 && j>-1){
+				if(a[i] != b[j]) return a[i] < b[j] ? -1 : 1;
+				i--;
+				j--;
+			}
+			return (a.length - b.length);
+		}
+	};
+
+	private INlist[] selector_nlists;
+
+	// The current path from the root (excluded), ids[0] is the child of the root
+	private int[] stack_ids = new int[16];
+	private int[] stack_pres = new int[16];
+	private int[] stack_counts = new int[16];
+	private int depth = 0;
+
+	private int currentPreCode = 1;	// the root takes pre-code 0
+	private int currentPosCode = 0;
+
+	/**
+	 * @param selector_count the number of selectors, selector IDs of records are in [0, selector_count)
+	 */
+	public SortedNlistBuilder(int selector_count){
+		this.selector_nlists = new INlist[selector_count];
+		for(int i=0; i<selector_count; i++) this.selector_nlists[i] = new Nodelist();
+	}
+
+	/**
+	 * Feed the next record, records must be fed in the order of REVERSED_RECORD_COMPARATOR
+	 * @param record an int array of selector IDs in ascending order
+	 */
+	public void accept(int[] record){
+		// length of the common prefix of the current path and the reversed record
+		int common = 0, index = record.length-1;
+		while(common < this.depth && index > -1 && this.stack_ids[common] == record[index]){
+			common++;
+			index--;
+		}
+
+		// Nodes out of the common prefix are completed
+		while(this.depth > common) this.pop();
+
+		// New nodes for the rest of the record
+		if(this.stack_ids.length < record.length) this.grow_stack(record.length);
+		for(; index>-1; index--){
+			this.stack_ids[this.depth] = record[index];
+			this.stack_pres[this.depth] = this.currentPreCode;
+			this.stack_counts[this.depth] = 0;
+			this.currentPreCode++;
+			this.depth++;
+		}
+
+		// The record ends at the top node, its count is propagated to the ancestors when popping
+		if(this.depth > 0 && record.length > 0) this.stack_counts[record.length-1]++;
+	}
+
+	/**
+	 * Complete all remaining nodes and return the Nlists
+	 * @return array of Nlists of selectors, selectorID is the index
+	 */
+	public INlist[] finish(){
+		while(this.depth > 0) this.pop();
+		for(INlist nlist : this.selector_nlists) nlist.shrink();
+		return this.selector_nlists;
+	}
+
+	private void pop(){
+		this.depth--;
+		int count = this.stack_counts[this.depth];
+		this.selector_nlists[this.stack_ids[this.depth]].add(this.stack_pres[this.depth], this.currentPosCode, count);
+		this.currentPosCode++;
+		if(this.depth > 0) this.stack_counts[this.depth-1] += count;
+	}
+
+	private void grow_stack(int capacity){
+		this.stack_ids = Arrays.copyOf(this.stack_ids, capacity);
+		this.stack_pres = Arrays.copyOf(this.stack_pres, capacity);
+		this.stack_counts = Arrays.copyOf(this.stack_counts, capacity);
+	}
+
+
+	/**
+	 * Build Nlists from in-memory records. The records are sorted by a parallel sort on a shallow copy,
+	 * so the order of the input records (and the records themselves) are not changed.
+	 * @param records records of selector IDs, each record is in ascending order
+	 * @param selector_count the number of selectors
+	 * @return array of Nlists of selectors
+	 */
+	public static INlist[] build(int[][] records, int selector_count){
+		int[][] sorted_records = records.clone();
+		Arrays.parallelSort(sorted_records, REVERSED_RECORD_COMPARATOR);
+
+		SortedNlistBuilder builder = new SortedNlistBuilder(selector_count);
+		for(int[] record : sorted_records) builder.accept(record);
+		return builder.finish();
+	}
+
+	/**
+	 * Build Nlists from records which may not fit in memory, using an external merge sort.
+	 * </br>Records are collected into runs of at most 'run_int_budget' integers, each run is sorted in parallel and spilled to a temporary file,
+	 * then all runs are merged by a k-way merge which feeds the sweep directly.
+	 * If all records fit in one run, no file is written. The run files are deleted before it returns.
+	 * </br>Note: it is only reachable through PPCTree.create_Nlist_for_selectors_arr(Iterator, int). Learners keep all records
+	 * in memory for the search, so RuleLearner.setSortBasedNlists uses the in-memory 'build'.
+	 * @param records iterator of records of selector IDs, each record is in ascending order
+	 * @param selector_count the number of selectors
+	 * @param run_int_budget the maximum number of selector IDs held in memory for one run
+	 * @param tmp_dir directory for run files, the default temporary directory if null
+	 * @return array of Nlists of selectors
+	 * @throws IOException
+	 */
+	public static INlist[] build_external(Iterator<int[]> records, int selector_count,
+											long run_int_budget, File tmp_dir) throws IOException{
+		List<File> run_files = new ArrayList<File>();
+		List<int[]> run = new ArrayList<int[]>();
+		long run_size = 0;
+
+		try{
+			while(records.hasNext()){
+				int[] record = records.next();
+				run.add(record);
+				run_size += record.length + 1;
+				if(run_size >= run_int_budget){
+					run_files.add(spill_run(run, tmp_dir));
+					run.clear();
+					run_size = 0;
+				}
+			}
+
+			SortedNlistBuilder builder = new SortedNlistBuilder(selector_count);
+
+			if(run_files.isEmpty()){
+				// Everything fits in memory
+				int[][] sorted_records = run.toArray(new int[run.size()][]);
+				Arrays.parallelSort(sorted_records, REVERSED_RECORD_COMPARATOR);
+				for(int[] record : sorted_records) builder.accept(record);
+				return builder.finish();
+			}
+			if(!run.isEmpty()) run_files.add(spill_run(run, tmp_dir));
+			run = null;
+
+			// K-way merge of sorted runs
+			PriorityQueue<RunReader> heap = new PriorityQueue<RunReader>(run_files.size(), new Comparator<RunReader>(){
+				@Override
+				public int compare(RunReader a, RunReader b) {
+					return REVERSED_RECORD_COMPARATOR.compare(a.current, b.current);
+				}
+			});
+			List<RunReader> readers = new ArrayList<RunReader>(run_files.size());
+			try{
+				for(File file : run_files){
+					RunReader reader = new RunReader(file);
+					readers.add(reader);
+					if(reader.next()) heap.add(reader);
+				}
+
+				RunReader reader;
+				while((reader = heap.poll()) != null){
+					builder.accept(reader.current);
+					if(reader.next()) heap.add(reader);
+				}
+			}finally{
+				for(RunReader r : readers) r.close();
+			}
+
+			return builder.finish();
+		}finally{
+			for(File file : run_files) file.delete();
+		}
+	}
+
+	/**
+	 * Same as build_external(...) with the run budget of a quarter of the free heap
+	 */
+	public static INlist[] build_external(Iterator<int[]> records, int selector_count) throws IOException{
+		Runtime rt = Runtime.getRuntime();
+		long free_heap = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+		// one int costs 4 bytes, plus the array header of each record, so 1/16 of free bytes is 1/4 of the free heap
+		return build_external(records, selector_count, Math.max(1<<16, free_heap/16), null);
+	}
+
+	private static File spill_run(List<int[]> run, File tmp_dir) throws IOException{
+		int[][] sorted_records = run.toArray(new int[run.size()][]);
+		Arrays.parallelSort(sorted_records, REVERSED_RECORD_COMPARATOR);
+
+		File file = File.createTempFile("nlist_run_", ".bin", tmp_dir);
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1<<16));
+		try{
+			for(int[] record : sorted_records){
+				output.writeInt(record.length);
+				for(int id : record) output.writeInt(id);
+			}
+		}finally{
+			output.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Sequential reader of a sorted run file
+	 */
+	private static class RunReader {
+		private DataInputStream input;
+		int[] current;
+
+		RunReader(File file) throws IOException{
+			this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1<<16));
+		}
+
+		boolean next() throws IOException{
+			int length;
+			try{
+				length = this.input.readInt();
+			}catch(EOFException e){
+				this.current = null;
+				return false;
+			}
+			this.current = new int[length];
+			for(int i=0; i<length; i++) this.current[i] = this.input.readInt();
+			return true;
+		}
+
+		void close() throws IOException{
+			this.input.close();
+		}
+	}
+}
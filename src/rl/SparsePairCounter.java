@@ -0,0 +1,122 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+/**
+ * Hash-based storage of support counts of pairs, memory is proportional to the number of co-occurring pairs.
+ * </br>Open addressing with linear probing on primitive arrays, the key of the pair (i, j), i < j, is (i << 32 | j), never 0.
+ * </br>NOT thread-safe: use one instance per thread, then merge them with 'merge'.
+ */
+public class SparsePairCounter implements PairCounter {
+	private static final float LOAD_FACTOR = 0.5f;
+	
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+	private int mask;
+	private int dim;
+	
+	public SparsePairCounter(int dim){
+		this(dim, 1024);
+	}
+	
+	public SparsePairCounter(int dim, int expected_pair_count){
+		this.dim = dim;
+		int capacity = Integer.highestOneBit(Math.max(16, (int) (expected_pair_count/LOAD_FACTOR)) - 1) << 1;
+		this.keys = new long[capacity];
+		this.values = new int[capacity];
+		this.mask = capacity - 1;
+	}
+	
+	private static long key(int i, int j){
+		return (i < j) ? ((long) i << 32) | j : ((long) j << 32) | i;
+	}
+	
+	private static int hash(long key){
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+	
+	public int dim(){
+		return this.dim;
+	}
+	
+	/**
+	 * @return the number of stored pairs
+	 */
+	public int size(){
+		return this.size;
+	}
+	
+	public void add(int i, int j, int amount){
+		this.add(key(i, j), amount);
+	}
+	
+	private void add(long key, int amount){
+		int slot = hash(key) & this.mask;
+		while(this.keys[slot] != 0){
+			if(this.keys[slot] == key){
+				this.values[slot] += amount;
+				return;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		this.keys[slot] = key;
+		this.values[slot] = amount;
+		this.size++;
+		if(this.size > this.keys.length*LOAD_FACTOR) this.grow();
+	}
+	
+	public int get(int i, int j){
+		long key = key(i, j);
+		int slot = hash(key) & this.mask;
+		while(this.keys[slot] != 0){
+			if(this.keys[slot] == key) return this.values[slot];
+			slot = (slot + 1) & this.mask;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Pairs are visited in no particular order
+	 */
+	public void for_each_pair(int min_count, PairVisitor visitor){
+		long key;
+		for(int slot=0; slot<this.keys.length; slot++){
+			key = this.keys[slot];
+			if(key == 0 || this.values[slot] < min_count) continue;
+			visitor.visit((int) (key >>> 32), (int) key, this.values[slot]);
+		}
+	}
+	
+	/**
+	 * Add all counts of 'other' into this counter
+	 * @param other
+	 */
+	public void merge(SparsePairCounter other){
+		for(int slot=0; slot<other.keys.length; slot++){
+			if(other.keys[slot] != 0) this.add(other.keys[slot], other.values[slot]);
+		}
+	}
+	
+	private void grow(){
+		long[] old_keys = this.keys;
+		int[] old_values = this.values;
+		int capacity = old_keys.length << 1;
+		this.keys = new long[capacity];
+		this.values = new int[capacity];
+		this.mask = capacity - 1;
+		
+		int slot;
+		for(int k=0; k<old_keys.length; k++){
+			if(old_keys[k] == 0) continue;
+			slot = hash(old_keys[k]) & this.mask;
+			while(this.keys[slot] != 0) slot = (slot + 1) & this.mask;
+			this.keys[slot] = old_keys[k];
+			this.values[slot] = old_values[k];
+		}
+	}
+}
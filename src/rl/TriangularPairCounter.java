@@ -0,0 +1,66 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Packed upper-triangular storage of support counts of pairs, dim*(dim-1)/2 counters instead of dim*dim.
+ * </br>Counters are updated atomically, so one instance can be shared by all counting threads.
+ * </br>The pair (i, j), i < j, is at index i*(2*dim-i-1)/2 + (j-i-1).
+ */
+public class TriangularPairCounter implements PairCounter {
+	private AtomicIntegerArray counts;
+	private int dim;
+	
+	public TriangularPairCounter(int dim){
+		long size = packed_size(dim);
+		if(size > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Too many selectors for a packed triangular counter: " + dim);
+		this.dim = dim;
+		this.counts = new AtomicIntegerArray((int) size);
+	}
+	
+	/**
+	 * @return the number of counters for 'dim' selectors
+	 */
+	public static long packed_size(int dim){
+		return (long) dim*(dim-1)/2;
+	}
+	
+	private int index(int i, int j){
+		if(i > j){
+			int tmp = i;
+			i = j;
+			j = tmp;
+		}
+		return (int) ((long) i*(2*dim-i-1)/2) + (j-i-1);
+	}
+	
+	public int dim(){
+		return this.dim;
+	}
+	
+	public void add(int i, int j, int amount){
+		this.counts.addAndGet(this.index(i, j), amount);
+	}
+	
+	public int get(int i, int j){
+		return this.counts.get(this.index(i, j));
+	}
+	
+	/**
+	 * Pairs are visited in ascending order of (i, j)
+	 */
+	public void for_each_pair(int min_count, PairVisitor visitor){
+		int index = 0, count;
+		for(int i=0; i<this.dim; i++){
+			for(int j=i+1; j<this.dim; j++, index++){
+				count = this.counts.get(index);
+				if(count >= min_count) visitor.visit(i, j, count);
+			}
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl.eg;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rl.CancellationToken;
+import rl.LearnerExecutor;
+import rl.RuleInfo;
+import rl.RuleStore;
+import evaluations.HeuristicMetricFactory.METRIC_TYPES;
+
+
+/**
+ * Distributed LORD with a coordinator and worker processes (JVMs) connected by sockets.
+ * </br>The searches of locally best rules for training examples are independent, so they are spread over workers:
+ * </br> 1. The coordinator does 'fetch_information' and ships the preprocessing snapshot (see LearnerSnapshot) to each worker.
+ * </br> 2. The examples are split into index ranges, each worker takes ranges one by one, searches rules for the examples
+ * of a range with its own threads and sends back the found rules.
+ * </br> 3. The coordinator collects the rules into one RuleStore and filters them by RuleManager as LORD does.
+ * </br>A range of a failed worker is given to another worker, ranges left when no worker is available are searched by the coordinator itself.
+ * </br>Workers are local processes started by the coordinator (setLocalWorkerCount) and/or processes started on other machines by
+ * 'DistributedLordWorker host port' (setRemoteWorkerCount). The learned rules are the same as LORD's.
+ */
+public class DistributedLord extends Lord{
+	static final int PROTOCOL_MAGIC = 0x4C4F5244;	// 'LORD'
+	static final int PROTOCOL_VERSION = 1;
+
+	// coordinator -> worker
+	static final int CMD_RANGE = 1;
+	static final int CMD_DONE = 2;
+	// worker -> coordinator
+	static final int MSG_READY = 3;
+	static final int MSG_RULES = 4;
+
+	private int port = 0;
+	private int local_worker_count = 2;
+	private int remote_worker_count = 0;
+	private int accept_timeout = 60000;
+	private int worker_timeout = 600000;
+	private int ranges_per_worker = 8;
+
+    public DistributedLord(){
+        super();
+    }
+
+    /**
+     * @param port port of the coordinator, 0 for any free port (only possible without remote workers). Default value is 0.
+     */
+    public void setPort(int port){
+    	this.port = port;
+    }
+
+    /**
+     * @param local_worker_count the number of worker processes started on this machine. Default value is 2.
+     */
+    public void setLocalWorkerCount(int local_worker_count){
+    	this.local_worker_count = Math.max(0, local_worker_count);
+    }
+
+    /**
+     * @param remote_worker_count the number of workers started separately, the coordinator waits for their connections. Default value is 0.
+     */
+    public void setRemoteWorkerCount(int remote_worker_count){
+    	this.remote_worker_count = Math.max(0, remote_worker_count);
+    }
+
+    /**
+     * @param accept_timeout milliseconds to wait for the connection of a worker, learning goes on with the connected workers. Default value is 60000.
+     */
+    public void setAcceptTimeout(int accept_timeout){
+    	this.accept_timeout = accept_timeout;
+    }
+
+    /**
+     * @param worker_timeout milliseconds to wait for the result of one range, a worker exceeding it is considered failed. Default value is 600000.
+     */
+    public void setWorkerTimeout(int worker_timeout){
+    	this.worker_timeout = worker_timeout;
+    }
+
+    /**
+     * @param ranges_per_worker the number of index ranges per worker, more ranges balance better but cost more messages. Default value is 8.
+     */
+    public void setRangesPerWorker(int ranges_per_worker){
+    	this.ranges_per_worker = Math.max(1, ranges_per_worker);
+    }
+
+    ///////////////////////////////////////////// LEARNING PHASE //////////////////////////////////////////////
+    public long learning(METRIC_TYPES metric_type, double arg){
+    	long start = System.currentTimeMillis();
+
+    	int row_count = this.selectorID_records.length;
+    	int worker_count = this.local_worker_count + this.remote_worker_count;
+
+    	// Index ranges of examples
+    	BlockingQueue<int[]> ranges = new LinkedBlockingQueue<int[]>();
+    	int range_size = Math.max(1, (int) Math.ceil((double) row_count / (Math.max(1, worker_count) * this.ranges_per_worker)));
+    	for(int from=0; from<row_count; from+=range_size) ranges.add(new int[]{from, Math.min(row_count, from+range_size)});
+
+    	RuleStore rule_store = new RuleStore(row_count);
+    	CancellationToken token = this.get_run_token();
+
+    	if(worker_count > 0){
+	    	try {
+				this.distribute_search(rule_store, ranges, metric_type, arg, token);
+			} catch (IOException e) {
+				// The ranges not given to any worker stay in the queue
+				System.out.println("\tDistributed search failed, searching the remaining ranges locally: " + e.getMessage());
+			} catch (InterruptedException e) {
+				token.cancel();		// the remaining ranges are not searched locally
+				Thread.currentThread().interrupt();
+			}
+    	}
+
+    	// Ranges which are not done by any worker
+    	int[] range;
+    	int local_range_count = 0;
+    	while((range = ranges.poll()) != null){
+    		this.search_rules(rule_store, null, null, range[0], range[1], metric_type, arg, token);	// workers use the file order
+    		local_range_count++;
+    	}
+    	if(local_range_count > 0){
+    		System.out.println("\tCoordinator searched " + local_range_count + " ranges locally");
+    	}
+
+    	this.check_cancellation(token, "search");
+
+    	// Build the RuleManager
+    	this.build_rule_manager(rule_store, null, token);
+
+    	return System.currentTimeMillis()-start;
+    }
+
+    /**
+     * Ship the snapshot to the workers and let them search rules for the ranges.
+     * When it returns, 'ranges' keeps only the ranges which are not done.
+     * @param token no more ranges are given to the workers once it is cancelled
+     */
+    private void distribute_search(RuleStore rule_store, BlockingQueue<int[]> ranges,
+    								METRIC_TYPES metric_type, double arg, CancellationToken token) throws IOException, InterruptedException{
+    	File snapshot = File.createTempFile("lord_snapshot_", ".bin");
+    	snapshot.deleteOnExit();
+    	List<Process> processes = new ArrayList<Process>(this.local_worker_count);
+    	List<Socket> sockets = new ArrayList<Socket>();
+    	ServerSocket server = new ServerSocket(this.port);
+
+    	try{
+    		this.store_snapshot(snapshot.getPath());
+
+    		int local_thread_count = Math.max(1, this.thread_count / Math.max(1, this.local_worker_count));
+    		for(int i=0; i<this.local_worker_count; i++){
+    			processes.add(start_local_worker(server.getLocalPort(), local_thread_count));
+    		}
+
+    		// Wait for the workers
+    		int worker_count = this.local_worker_count + this.remote_worker_count;
+    		server.setSoTimeout(this.accept_timeout);
+    		try{
+    			while(sockets.size() < worker_count){
+    				Socket socket = server.accept();
+    				socket.setSoTimeout(this.worker_timeout);
+    				sockets.add(socket);
+    			}
+    		}catch(SocketTimeoutException e){
+    			System.out.println("\tOnly " + sockets.size() + " of " + worker_count + " workers connected");
+    		}
+
+    		// One coordinating task per worker
+    		AtomicInteger remaining_range_count = new AtomicInteger(ranges.size());
+    		if(ranges.isEmpty()) ranges.add(RemoteSearchThread.NO_MORE_RANGES);
+    		Runnable[] tasks = new Runnable[sockets.size()];
+    		for(int i=0; i<tasks.length; i++){
+    			tasks[i] = new RemoteSearchThread(sockets.get(i), snapshot, metric_type, arg,
+    											ranges, remaining_range_count, rule_store, token, i);
+    		}
+    		LearnerExecutor.invoke_all(this.getExecutor(), tasks, token);
+    	}finally{
+    		ranges.remove(RemoteSearchThread.NO_MORE_RANGES);
+    		server.close();
+    		for(Socket socket : sockets) socket.close();
+    		for(Process process : processes){
+    			if(!process.waitFor(10, TimeUnit.SECONDS)) process.destroy();
+    		}
+    		snapshot.delete();
+    	}
+    }
+
+    /**
+     * Start a worker process on this machine with the same Java runtime and class path as the coordinator
+     */
+    private static Process start_local_worker(int port, int thread_count) throws IOException{
+    	String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    	ProcessBuilder builder = new ProcessBuilder(java,
+    												"-cp", System.getProperty("java.class.path"),
+    												DistributedLordWorker.class.getName(),
+    												"localhost", String.valueOf(port), String.valueOf(thread_count));
+    	builder.redirectErrorStream(true);
+    	builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+    	return builder.start();
+    }
+
+    ///////////////////////////////////////////// MESSAGES //////////////////////////////////////////////
+    static void write_rule(DataOutputStream output, RuleInfo rule) throws IOException{
+    	output.writeInt(rule.headID);
+    	output.writeInt(rule.body.length);
+    	for(int id : rule.body) output.writeInt(id);
+    	output.writeDouble(rule.n);
+    	output.writeDouble(rule.p);
+    	output.writeDouble(rule.n_plus_p);
+    	output.writeDouble(rule.heuristic_value);
+    }
+
+    static RuleInfo read_rule(DataInputStream input) throws IOException{
+    	int head_id = input.readInt();
+    	int[] body = new int[input.readInt()];
+    	for(int i=0; i<body.length; i++) body[i] = input.readInt();
+    	double n = input.readDouble();
+    	double p = input.readDouble();
+    	double n_plus_p = input.readDouble();
+    	double heuristic_value = input.readDouble();
+    	return new RuleInfo(n, p, n_plus_p, body, head_id, heuristic_value);
+    }
+}
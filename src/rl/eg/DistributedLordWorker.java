@@ -0,0 +1,129 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl.eg;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.zip.DataFormatException;
+
+import rl.CancellationToken;
+import rl.RuleInfo;
+import rl.RuleStore;
+import evaluations.HeuristicMetricFactory.METRIC_TYPES;
+
+/**
+ * Worker process of DistributedLord.
+ * </br>Connects to the coordinator, restores the preprocessing snapshot sent by it, then searches rules for the ranges of examples
+ * given by the coordinator with its own threads, until the coordinator says done.
+ * </br>Usage: DistributedLordWorker host port [thread_count]
+ */
+public class DistributedLordWorker {
+
+	public static void main(String[] args) {
+		if(args.length < 2){
+			System.out.println("Usage: DistributedLordWorker host port [thread_count]");
+			return;
+		}
+
+		int thread_count = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+		try {
+			run(args[0], Integer.parseInt(args[1]), thread_count);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		} catch (DataFormatException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @param host host of the coordinator
+	 * @param port port of the coordinator
+	 * @param thread_count the number of search threads, 0 for the default one
+	 * @throws IOException
+	 * @throws DataFormatException if the coordinator speaks another protocol
+	 */
+	public static void run(String host, int port, int thread_count) throws IOException, DataFormatException{
+		long start = System.currentTimeMillis();
+		int range_count = 0;
+
+		Socket socket = new Socket(host, port);
+		try{
+			DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1<<16));
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1<<16));
+
+			if(input.readInt() != DistributedLord.PROTOCOL_MAGIC || input.readInt() != DistributedLord.PROTOCOL_VERSION){
+				throw new DataFormatException("Unsupported coordinator protocol");
+			}
+			METRIC_TYPES metric_type = METRIC_TYPES.values()[input.readInt()];
+			double arg = input.readDouble();
+
+			Lord learner = new Lord();
+			if(thread_count > 0) learner.setThreadCount(thread_count, true);
+			receive_snapshot(input, learner);
+
+			output.writeInt(DistributedLord.MSG_READY);
+			output.flush();
+
+			int command;
+			while((command = input.readInt()) != DistributedLord.CMD_DONE){
+				if(command != DistributedLord.CMD_RANGE) throw new DataFormatException("Unknown command " + command);
+				int from = input.readInt();
+				int to = input.readInt();
+
+				RuleStore rule_store = new RuleStore(to - from);
+				learner.search_rules(rule_store, null, null, from, to, metric_type, arg, new CancellationToken());
+
+				output.writeInt(DistributedLord.MSG_RULES);
+				output.writeInt(rule_store.size());
+				for(RuleInfo rule : rule_store) DistributedLord.write_rule(output, rule);
+				output.flush();
+				range_count++;
+			}
+		}finally{
+			socket.close();
+		}
+
+		// Just for testing
+		StringBuilder sb = new StringBuilder(100);
+		sb.append("\tDistributedLordWorker did ").append(range_count).append(" ranges, finished in ")
+		.append(System.currentTimeMillis()-start).append(" ms");
+		System.out.println(sb.toString());
+	}
+
+	/**
+	 * Receive the snapshot into a temporary file and restore it to the learner
+	 */
+	private static void receive_snapshot(DataInputStream input, Lord learner) throws IOException, DataFormatException{
+		long length = input.readLong();
+		File snapshot = File.createTempFile("lord_snapshot_", ".bin");
+		try{
+			OutputStream file_output = new FileOutputStream(snapshot);
+			try{
+				byte[] buffer = new byte[1<<16];
+				while(length > 0){
+					int read = input.read(buffer, 0, (int) Math.min(buffer.length, length));
+					if(read < 0) throw new IOException("Snapshot is truncated");
+					file_output.write(buffer, 0, read);
+					length -= read;
+				}
+			}finally{
+				file_output.close();
+			}
+			learner.fetch_information_from_snapshot(snapshot.getPath());
+		}finally{
+			snapshot.delete();
+		}
+	}
+}
@@ -5,64 +5,46 @@
 
 package rl.eg;
 
-import java.util.List;
-import java.util.Map;
-
-import rl.IntHolder;
-import rl.RTree;
+import rl.ChunkScheduler;
 import rl.RuleInfo;
+import rl.RuleMatcher;
+import rl.RuleStore;
 
-class FilterRuleThread extends Thread{
-	private RTree rtree;
+class FilterRuleThread implements Runnable{
+	private RuleMatcher matcher;
 	private int[][] selectorID_records;
-	private Map<String, RuleInfo> filtered_rule_set;
-	private IntHolder globalIndex;
+	private RuleStore filtered_rule_store;
+	private ChunkScheduler scheduler;
 	private int id;
 	
-	public FilterRuleThread(RTree tree,
+	public FilterRuleThread(RuleMatcher matcher,
 						int[][] selectorID_records,
-						Map<String, RuleInfo> filtered_rule_set,
-						IntHolder globalIndex,
+						RuleStore filtered_rule_store,
+						ChunkScheduler scheduler,
 						int id){
-		this.rtree = tree;
+		this.matcher = matcher;
 		this.selectorID_records = selectorID_records;
-		this.filtered_rule_set = filtered_rule_set;
-		this.globalIndex = globalIndex;
+		this.filtered_rule_store = filtered_rule_store;
+		this.scheduler = scheduler;
 		this.id = id;
 	}
 	
 	public void run(){
 		long start = System.currentTimeMillis();
-		int row_count = this.selectorID_records.length;
 		int[] example;
+		RuleInfo selected_rule;
 		
-		RuleInfo init_rule = new RuleInfo();
-		init_rule.heuristic_value = -Double.MAX_VALUE;
-		
-		while (true){
-			synchronized(globalIndex){
-				if(this.globalIndex.value >= row_count) break;
-				example = this.selectorID_records[this.globalIndex.value];
-				this.globalIndex.value++;
-			}
+		ChunkScheduler.Range range = new ChunkScheduler.Range();
+		while (this.scheduler.next(range)){
+			for(int index=range.start; index<range.end; index++){
+				example = this.selectorID_records[index];
 			
-			// selector IDs in the example are already sorted
-			int classID = example[example.length-1];
-			List<RuleInfo> covering_rules = this.rtree.find_covering_rules(example);
+				// selector IDs in the example are already sorted, only full covering rules (match the rule head) are examined
+				selected_rule = this.matcher.find_full_covering_rule(example);
 			
-			RuleInfo selected_rule = init_rule;
-			
-			for(RuleInfo rule : covering_rules){
-				// Do not need to compare on classes, because we only examine on full covering rules (match the rule head)
-				if(rule.headID == classID && 
-						(selected_rule.heuristic_value < rule.heuristic_value || 
-	    				(selected_rule.heuristic_value == rule.heuristic_value && selected_rule.p < rule.p))){
-					selected_rule = rule;
+				if(selected_rule != null){
+					this.filtered_rule_store.add(selected_rule);
 				}
-	    	}
-			
-			if(selected_rule != init_rule){
-				this.filtered_rule_set.put(selected_rule.signature(), selected_rule);
 			}
 		}
 		
@@ -0,0 +1,49 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl.eg;
+
+import java.util.List;
+
+import rl.ChunkScheduler;
+import rl.RuleInfo;
+
+/**
+ * Rule-major filtering: updates the best rules of the examples covered by each rule, see StreamingRuleFilter.add_rules
+ */
+class FilterRuleThread_RuleMajor implements Runnable{
+	private StreamingRuleFilter rule_filter;
+	private List<RuleInfo> rules;
+	private ChunkScheduler scheduler;
+	private int id;
+	
+	public FilterRuleThread_RuleMajor(StreamingRuleFilter rule_filter,
+									List<RuleInfo> rules,
+									ChunkScheduler scheduler,
+									int id){
+		this.rule_filter = rule_filter;
+		this.rules = rules;
+		this.scheduler = scheduler;
+		this.id = id;
+	}
+	
+	public void run(){
+		long start = System.currentTimeMillis();
+		
+		ChunkScheduler.Range range = new ChunkScheduler.Range();
+		while (this.scheduler.next(range)){
+			for(int index=range.start; index<range.end; index++){
+				this.rule_filter.add_rule(this.rules.get(index));
+			}
+		}
+		
+		// Just for testing
+		StringBuilder sb = new StringBuilder(100);
+		sb.append('\t').append(this.getClass().getSimpleName()).append(' ')
+		.append(id).append(" finished in ").append(System.currentTimeMillis()-start).append(" ms");
+		System.out.println(sb.toString());
+	}
+
+}
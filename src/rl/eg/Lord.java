@@ -6,15 +6,20 @@
 package rl.eg;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import rl.CancellationToken;
+import rl.ChunkScheduler;
+import rl.LearnerExecutor;
+import rl.Prediction;
 import rl.IntHolder;
 import rl.RuleInfo;
+import rl.RuleStore;
 import rl.RuleLearner;
+import rl.SearchContext;
 import utilities.MemoryHistogramer;
 import evaluations.HeuristicMetricFactory.METRIC_TYPES;
 import evaluations.RuleGroupChiSquare;
@@ -26,11 +31,73 @@ import evaluations.RuleGroupChiSquare;
  */
 public class Lord extends RuleLearner{
 	public RuleManager rm;
+	protected boolean pipelined_filtering = false;
+	protected boolean rule_major_filtering = false;
+	protected int prediction_cache_capacity = 0;
 	
     public Lord(){
         super();
     }
     
+    /**
+     * Filter rules while they are found (see StreamingRuleFilter), instead of a second pass over the training examples
+     * after the search. The learned rules are the same. Default value is false.
+     * @param pipelined_filtering
+     */
+    public void setPipelinedFiltering(boolean pipelined_filtering){
+    	this.pipelined_filtering = pipelined_filtering;
+    }
+    
+    /**
+     * Filter rules after the search rule by rule: each rule updates the best rules of the training examples it covers,
+     * found from the Nlists of its selectors (see StreamingRuleFilter.add_rules), instead of a look up of the rule tree for each example.
+     * The learned rules are the same. Not used if the pipelined filtering is set, which is also rule-major. Default value is false.
+     * @param rule_major_filtering
+     */
+    public void setRuleMajorFiltering(boolean rule_major_filtering){
+    	this.rule_major_filtering = rule_major_filtering;
+    }
+    
+    /**
+     * Cache the predictions of repetitive examples in the RuleManager of each learning, see RuleManager.setPredictionCache.
+     * Default value is 0, no cache.
+     * @param capacity the maximum number of cached predictions
+     */
+    public void setPredictionCacheCapacity(int capacity){
+    	this.prediction_cache_capacity = capacity;
+    }
+    
+    /**
+     * @param rule_store the store which receives all found rules
+     * @return a filter pipelined with the rule search if it is set, otherwise null
+     */
+    protected StreamingRuleFilter create_rule_filter(RuleStore rule_store){
+    	if(!this.pipelined_filtering) return null;
+    	return new StreamingRuleFilter(this.selectorID_records, this.selector_nlists, rule_store);
+    }
+    
+    /**
+     * Build the RuleManager from the found rules
+     * @param rule_store all found rules
+     * @param rule_filter the filter pipelined with the search, null to filter the rules now
+     * @param token cancellation token of the run, with the PARTIAL policy the rules found so far are used
+     */
+    protected void build_rule_manager(RuleStore rule_store, StreamingRuleFilter rule_filter, CancellationToken token){
+    	if(rule_filter == null && this.rule_major_filtering && !token.is_cancelled()){
+    		StreamingRuleFilter rule_major_filter = new StreamingRuleFilter(this.selectorID_records, this.selector_nlists, rule_store);
+    		// A cancelled filter is not used, the RuleManager below keeps all rules
+    		if(rule_major_filter.add_rules(rule_store.values(), this.thread_count, this.getExecutor(), this.telemetry, token)){
+    			rule_filter = rule_major_filter;
+    		}
+    	}
+    	if(rule_filter != null) this.rm = new RuleManager(this.default_classID, rule_filter);
+    	else this.rm = new RuleManager(this.default_classID, rule_store, this.selectorID_records,
+    									this.thread_count, this.getExecutor(), this.telemetry, token);
+    	this.rm.setPredictionCache(this.prediction_cache_capacity);
+    	if(this.telemetry != null) this.telemetry.finish();
+    	this.check_cancellation(token, "filter");
+    }
+    
     ///////////////////////////////////////////// LEARNING PHASE //////////////////////////////////////////////    
     public long learning(METRIC_TYPES metric_type, double arg){
     	if(this.row_count * this.attr_count > 1000000 * 20){
@@ -39,57 +106,85 @@ public class Lord extends RuleLearner{
     	
     	long start = System.currentTimeMillis();
     	
-    	// Threads
-        IntHolder globalIndex = new IntHolder(0);
-        Thread[] threads = new Thread[this.thread_count];
+    	this.prepare_pair_prefilter();
     	
-		List<Map<String, RuleInfo>> ruleSet_list = new ArrayList<Map<String, RuleInfo>>(this.thread_count);
-		for(int i=0; i<this.thread_count; i++){
-			Map<String, RuleInfo> rule_set = new HashMap<String, RuleInfo>();
-			ruleSet_list.add(rule_set);
-			
-			threads[i] = new SearchRuleThread(this.selectorID_records,
-											this.selector_nlists,
-											this.selector_nlist_map,
-											rule_set,
-											metric_type,
-											arg,
-											globalIndex, i);
-			
-			threads[i].start();
-		}
-		
-		try {
-			for(int i=0; i<this.thread_count; i++) threads[i].join();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+		RuleStore rule_store = new RuleStore(this.selectorID_records.length);	// shared by all threads
+		StreamingRuleFilter rule_filter = this.create_rule_filter(rule_store);
+		CancellationToken token = this.get_run_token();
+		this.search_rules(rule_store, rule_filter, this.get_example_order(), 0, this.selectorID_records.length, metric_type, arg, token);
+		this.check_cancellation(token, "search");
 		
 		// How many before-filtered rules are there? uncomment the below code block
-		/*Map<String, RuleInfo> before_filter_rules = new HashMap<String, RuleInfo>();
-		for(Map<String, RuleInfo> set : ruleSet_list){
-			before_filter_rules.putAll(set);
-		}
-		System.out.println("Total before-filter rules: " + before_filter_rules.size());
-		//for(RuleInfo rule : before_filter_rules.values()){
+		/*System.out.println("Total before-filter rules: " + rule_store.size());
+		//for(RuleInfo rule : rule_store){
 		//	System.out.println(rule.content());
 		//}
 		System.out.println("----------------End before-filter rule set-----------------");*/
 		
 		
 		// Build the RuleManager
-		this.rm = new RuleManager(this.default_classID, ruleSet_list, this.selectorID_records, this.thread_count);
+		this.build_rule_manager(rule_store, rule_filter, token);
 		    	
     	return System.currentTimeMillis()-start;
     }
     
+    /**
+     * In parallel, search for a locally best rule for each training example at position in [from, to) of 'example_order',
+     * the found rules are added into 'rule_store'.
+     * @param rule_store
+     * @param rule_filter filter pipelined with the search, null if not used
+     * @param example_order positions of the examples, null for the file order
+     * @param from
+     * @param to
+     * @param metric_type
+     * @param arg
+     * @param token the search stops early if it is cancelled
+     */
+    protected void search_rules(RuleStore rule_store, StreamingRuleFilter rule_filter, int[] example_order, int from, int to,
+    							METRIC_TYPES metric_type, double arg, CancellationToken token){
+    	// Threads
+        ChunkScheduler scheduler = new ChunkScheduler(from, to, this.thread_count, ChunkScheduler.DEFAULT_TARGET_CHUNK_NANOS);
+        scheduler.setCancellationToken(token);
+        Runnable[] tasks = new Runnable[this.thread_count];
+        this.start_search_telemetry(scheduler, rule_store);
+        SearchContext search_context = this.create_search_context();
+    	
+		for(int i=0; i<this.thread_count; i++){
+			tasks[i] = new SearchRuleThread(this.selectorID_records,
+											example_order,
+											this.selector_nlists,
+											this.selector_nlist_map,
+											rule_store,
+											rule_filter,
+											metric_type,
+											arg,
+											search_context.for_thread(i),
+											scheduler, i);
+		}
+		
+		LearnerExecutor.invoke_all(this.getExecutor(), tasks, token);
+    }
+    
     ///////////////////////////////////////////// PREDICTION PHASE //////////////////////////////////////////////
+    @Override
+    public Prediction predict_example(int[] example, int count, boolean has_class){
+    	if(count < 2){
+    		// the new example is without body, just its class
+    		return this.rm.predict(example, 0);
+    	}
+    	return this.rm.predict(example, has_class ? count-1 : count);
+    }
+    
+    /**
+     * Predict with the details of the prediction in 'rm.covering_rules' and 'rm.selected_rule'.
+     * </br>Not reentrant, use 'predict_record' to predict from many threads.
+     */
     public int[] predict(String[] value_record, IntHolder predicted_classID){
     	int[] id_buffer = new int[this.attr_count];
 		int[] example;
 		
     	// convert value_record to a record of selectorIDs
-		example = this.convert_values_to_selectorIDs(value_record, id_buffer);
+		example = this.convert_values_to_sorted_selectorIDs(value_record, id_buffer);
 		
 		if(example.length < 2) {
 			// the new example is without body, just its class
@@ -102,7 +197,6 @@ public class Lord extends RuleLearner{
 			return example;
 		}
 		
-		Arrays.sort(example);
 		RuleInfo best_rule = this.rm.get_best_covering_rule(example); // covering rules stored in rm.covering_rules
 		if(best_rule != null){
 			predicted_classID.value = best_rule.headID;
@@ -114,13 +208,17 @@ public class Lord extends RuleLearner{
 		return example;
     }
     
+    /**
+     * Predict with the details of the prediction in 'rm.covering_rules' and 'rm.selected_rule'.
+     * </br>Not reentrant, use 'predict_record' to predict from many threads.
+     */
     @Override
 	public int[] predict_noclass(String[] value_record, IntHolder predicted_classID) {
     	int[] id_buffer = new int[this.attr_count];
 		int[] example;
 		
     	// convert value_record to a record of selectorIDs
-		example = this.convert_values_to_selectorIDs(value_record, id_buffer);
+		example = this.convert_values_to_sorted_selectorIDs(value_record, id_buffer);
 		
 		if(example.length < 2) {
 			// the new example is without body, just its class
@@ -133,7 +231,6 @@ public class Lord extends RuleLearner{
 			return example;
 		}
 		
-		Arrays.sort(example);
 		RuleInfo best_rule = this.rm.get_best_covering_rule_noclass(example); // covering rules stored in rm.covering_rules
 		if(best_rule != null){
 			predicted_classID.value = best_rule.headID;
@@ -157,7 +254,7 @@ public class Lord extends RuleLearner{
 		int[] example;
 		
     	// convert value_record to a record of selectorIDs
-		example = this.convert_values_to_selectorIDs(value_record, id_buffer);
+		example = this.convert_values_to_sorted_selectorIDs(value_record, id_buffer);
 		
 		if(example.length < 2) {
 			// the new example is without body, just its class
@@ -170,7 +267,6 @@ public class Lord extends RuleLearner{
 			return example;
 		}
 		
-		Arrays.sort(example);
 		
 		List<RuleInfo> covering_rules = this.rm.ruleTree.find_covering_rules(example);
 		
@@ -0,0 +1,289 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl.eg;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+
+import prepr.DataReader;
+import rl.CancellationToken;
+import rl.ChunkScheduler;
+import rl.LearnerExecutor;
+import rl.PPCNode;
+import rl.PPCTree;
+import rl.RTree;
+import rl.RuleInfo;
+import rl.RuleSearcher;
+import rl.RuleStore;
+import rl.SearchContext;
+import evaluations.HeuristicMetric;
+import evaluations.HeuristicMetricFactory;
+import evaluations.HeuristicMetricFactory.METRIC_TYPES;
+
+
+/**
+ * Incremental variant of LORD, new training examples can be added in batches after learning.
+ * </br>The PPCTree is kept with PPCNodelist-based Nlists of selectors. For a batch of new examples:
+ * </br> 1. The examples are inserted into the tree, the tree is re-coded in bulk and only the new nodes are inserted into the Nlists.
+ * </br> 2. Statistics of rules covering the new examples are updated by counting, heuristic values of all rules are re-evaluated.
+ * </br> 3. Rules are searched again only for the new examples and the examples whose rules are affected by step 2.
+ * </br> 4. The RuleManager is updated in place by filtering the rules again.
+ * </br>
+ * </br>Note: selector IDs are fixed at the first 'fetch_information', values unseen at that time are ignored,
+ * and new examples without a known class are skipped.
+ */
+public class LordIncremental extends Lord{
+	protected PPCTree ppcTree;
+
+	protected METRIC_TYPES metric_type;
+	protected double metric_arg;
+
+	/**
+	 * The rule found for each example, at the index of the example in 'selectorID_records', null if no rule is searched
+	 */
+	protected RuleInfo[] example_rules;
+
+    public LordIncremental(){
+        super();
+    }
+
+    public PPCTree getPPCTree(){
+    	return this.ppcTree;
+    }
+
+    /**
+     * Keep the PPCTree and use PPCNodelist-based Nlists of selectors, to support inserting new examples later
+     */
+    @Override
+    protected void create_selector_nlists(long[] times) throws IOException, DataFormatException {
+    	this.ppcTree = new PPCTree();
+    	times[1] = this.construct_tree(this.ppcTree);
+
+    	long start = System.currentTimeMillis();
+    	this.selector_nlists = this.ppcTree.create_Nlist_for_selectors_arr_inc(this.selector_count);
+    	this.selector_nlist_map = PPCTree.create_selector_Nlist_map(this.selector_nlists);
+    	RuleSearcher.setSelectorNlists(this.selector_nlists);
+    	times[2] = System.currentTimeMillis() - start;
+    }
+
+    ///////////////////////////////////////////// LEARNING PHASE //////////////////////////////////////////////
+    public long learning(METRIC_TYPES metric_type, double arg){
+    	long start = System.currentTimeMillis();
+
+    	this.metric_type = metric_type;
+    	this.metric_arg = arg;
+    	this.example_rules = new RuleInfo[this.row_count];
+
+    	int[] example_indices = new int[this.row_count];
+    	for(int i=0; i<this.row_count; i++) example_indices[i] = i;
+
+    	this.search_rules(example_indices);
+
+    	this.rm = new RuleManager(this.default_classID, this.get_rule_store(), this.selectorID_records, this.thread_count, this.getExecutor());
+    	this.rm.setPredictionCache(this.prediction_cache_capacity);
+
+    	return System.currentTimeMillis()-start;
+    }
+
+    /**
+     * Add a batch of new training examples and update the learned rules incrementally.
+     * </br>Require 'learning' to have been called.
+     * @param value_records new examples, each one is a record of values in the same format as the training data set
+     * @return running time
+     */
+    public long learning_increment(List<String[]> value_records){
+    	long start = System.currentTimeMillis();
+
+    	// 1. Convert to records of selector IDs, skip examples without a known class
+    	int[] id_buffer = new int[this.attr_count];
+    	List<int[]> new_records = new ArrayList<int[]>(value_records.size());
+    	for(String[] value_record : value_records){
+    		int[] record = this.convert_values_to_sorted_selectorIDs(value_record, id_buffer);
+    		if(record.length == 0 || record[record.length-1] < this.predict_selector_count) continue;
+    		new_records.add(record);
+    	}
+    	if(new_records.isEmpty()) return System.currentTimeMillis()-start;
+
+    	int old_row_count = this.row_count;
+    	int new_row_count = old_row_count + new_records.size();
+
+    	// 2. Append the records, update frequencies of selectors and the default class
+    	this.selectorID_records = Arrays.copyOf(this.selectorID_records, new_row_count);
+    	this.example_rules = Arrays.copyOf(this.example_rules, new_row_count);
+    	for(int i=0; i<new_records.size(); i++){
+    		int[] record = new_records.get(i);
+    		this.selectorID_records[old_row_count+i] = record;
+    		for(int id : record) this.constructing_selectors.get(id).frequency++;
+    	}
+    	this.row_count = new_row_count;
+    	this.default_classID = this.get_default_class();
+
+    	// 3. Insert into the tree, re-code the tree in bulk and insert only the new nodes into the Nlists
+    	List<PPCNode> new_ppcNodes = new ArrayList<PPCNode>();
+    	for(int[] record : new_records) this.ppcTree.insert_record(record, this.selector_nlists, new_ppcNodes);
+    	this.ppcTree.assignPrePosOrderCode();
+    	for(PPCNode node : new_ppcNodes) this.selector_nlists[node.itemID].insert(node);
+
+    	// 4. Update statistics of rules covering the new examples, on copies: the RuleManager still serves the current rules
+    	Set<RuleInfo> affected_rules = Collections.newSetFromMap(new IdentityHashMap<RuleInfo, Boolean>());
+    	Map<RuleInfo, RuleInfo> updated_rules = this.update_rule_statistics(new_records, affected_rules);
+    	for(int i=0; i<old_row_count; i++){
+    		if(this.example_rules[i] != null) this.example_rules[i] = updated_rules.get(this.example_rules[i]);
+    	}
+
+    	// 5. Search again for the new examples and the examples whose rules are affected
+    	int[] example_indices = new int[new_row_count];
+    	int count = 0;
+    	for(int i=0; i<old_row_count; i++){
+    		if(this.example_rules[i] != null && affected_rules.contains(this.example_rules[i])) example_indices[count++] = i;
+    	}
+    	for(int i=old_row_count; i<new_row_count; i++) example_indices[count++] = i;
+
+    	StringBuilder sb = new StringBuilder(100);
+    	sb.append("\tIncremental update: ").append(new_records.size()).append(" new examples, ")
+    	.append(affected_rules.size()).append(" affected rules, ")
+    	.append(count).append(" examples to search again");
+    	System.out.println(sb.toString());
+
+    	this.search_rules(Arrays.copyOf(example_indices, count));
+
+    	// 6. Update the RuleManager in place, it swaps in the updated rules
+    	this.rm.update(this.default_classID, this.get_rule_store(), this.selectorID_records, this.thread_count, this.getExecutor());
+
+    	return System.currentTimeMillis()-start;
+    }
+
+    /**
+     * Read a batch of new training examples from a data file and update the learned rules incrementally.
+     * @param file_name data file in the same format as the training data set
+     * @return running time
+     * @throws IOException
+     * @throws DataFormatException
+     */
+    public long learning_increment(String file_name) throws IOException, DataFormatException {
+    	DataReader dr = DataReader.getDataReader(file_name);
+    	if(dr == null) throw new DataFormatException("Can not recognize the file type.");
+    	dr.bind_datasource(file_name);
+
+    	List<String[]> value_records = new ArrayList<String[]>();
+    	String[] value_record;
+    	while((value_record = dr.next_record()) != null) value_records.add(value_record);
+
+    	return this.learning_increment(value_records);
+    }
+
+    /**
+     * Search rules for the examples at the given indices in parallel, the results are recorded in 'example_rules'.
+     * Rules of the same body and head are shared among examples, so that statistics updates apply to all of them.
+     */
+    private void search_rules(int[] example_indices){
+    	ChunkScheduler scheduler = new ChunkScheduler(example_indices.length, this.thread_count);
+    	CancellationToken token = this.get_run_token();
+    	scheduler.setCancellationToken(token);
+        Runnable[] tasks = new Runnable[this.thread_count];
+        RuleStore rule_store = this.get_rule_store();	// found rules are shared with the current ones
+        SearchContext search_context = new SearchContext(this.selector_nlists, null, this.telemetry);	// pair support counts are not maintained for new examples
+
+		for(int i=0; i<this.thread_count; i++){
+			tasks[i] = new SearchRuleThread_LordIncremental(this.selectorID_records,
+															example_indices,
+															this.example_rules,
+															this.selector_nlists,
+															this.selector_nlist_map,
+															rule_store,
+															this.metric_type,
+															this.metric_arg,
+															search_context.for_thread(i),
+															scheduler, i);
+		}
+
+		LearnerExecutor.invoke_all(this.getExecutor(), tasks, token);
+		this.check_cancellation(token, "search");
+    }
+
+    /**
+     * @return the distinct rules found for all examples
+     */
+    private RuleStore get_rule_store(){
+    	RuleStore rule_store = new RuleStore(this.example_rules.length);
+		for(RuleInfo rule : this.example_rules){
+			if(rule != null) rule_store.add(rule);
+		}
+		return rule_store;
+    }
+
+    /**
+     * Count the new examples covered by each current rule to update p, n, n+p,
+     * then re-evaluate heuristic values of all rules with the new data size and class distribution.
+     * </br>The current rules are not changed, since the RuleManager may serve predictions from them:
+     * the statistics are updated on copies, which replace the current rules when the RuleManager is updated.
+     * @param new_records
+     * @param affected_rules output, the copies of the rules whose bodies cover at least one new example
+     * @return the updated copy of each rule of 'example_rules'
+     */
+    private Map<RuleInfo, RuleInfo> update_rule_statistics(List<int[]> new_records, Set<RuleInfo> affected_rules){
+    	// Group the copies of the rules by bodies, an RTree keeps only one rule per body.
+    	// The key of a body is the rule with this body and no head in 'bodies', shared by the rules of the body.
+    	Map<RuleInfo, RuleInfo> updated_rules = new IdentityHashMap<RuleInfo, RuleInfo>();
+    	Map<RuleInfo, List<RuleInfo>> body_groups = new IdentityHashMap<RuleInfo, List<RuleInfo>>();
+    	RuleStore bodies = new RuleStore(this.example_rules.length);
+    	RTree body_tree = new RTree();
+    	for(RuleInfo rule : this.example_rules){
+    		if(rule == null || updated_rules.containsKey(rule)) continue;
+    		RuleInfo copy = rule.clone();
+    		copy.id = rule.id;
+    		updated_rules.put(rule, copy);
+    		
+    		RuleInfo body_key = bodies.add(new RuleInfo(0, rule.body, -1));
+    		List<RuleInfo> group = body_groups.get(body_key);
+    		if(group == null){
+    			group = new ArrayList<RuleInfo>(2);
+    			body_groups.put(body_key, group);
+    			body_tree.insert_rule_inverse_order(rule.body, body_key);
+    		}
+    		group.add(copy);
+    	}
+
+    	if(body_groups.isEmpty()) return updated_rules;
+
+    	for(int[] record : new_records){
+    		int classID = record[record.length-1];
+    		for(RuleInfo body_key : body_tree.find_covering_rules(record)){
+    			for(RuleInfo rule : body_groups.get(body_key)){
+    				rule.n_plus_p++;
+    				if(rule.headID == classID) rule.p++;
+    				else rule.n++;
+    				affected_rules.add(rule);
+    			}
+    		}
+    	}
+
+    	// Re-evaluate heuristic values of all rules, the data size and the class distribution are changed
+    	HeuristicMetric metric = HeuristicMetricFactory.getInterestMetric(this.metric_type);
+		double[] arguments = new double[7];
+    	arguments[3] = this.row_count;
+    	arguments[6] = this.metric_arg;
+    	for(List<RuleInfo> group : body_groups.values()){
+    		for(RuleInfo rule : group){
+    			arguments[0] = rule.n_plus_p;
+    			arguments[1] = rule.p;
+    			arguments[2] = rule.n;
+    			arguments[4] = this.selector_nlists[rule.headID].supportCount();
+    			arguments[5] = arguments[3] - arguments[4];
+    			rule.heuristic_value = metric.evaluate(arguments);
+    		}
+    	}
+
+    	return updated_rules;
+    }
+}
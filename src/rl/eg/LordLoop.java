@@ -5,13 +5,11 @@
 
 package rl.eg;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import rl.IntHolder;
-import rl.RuleInfo;
+import rl.CancellationToken;
+import rl.ChunkScheduler;
+import rl.LearnerExecutor;
+import rl.RuleStore;
+import rl.SearchContext;
 import utilities.MemoryHistogramer;
 import evaluations.HeuristicMetricFactory.METRIC_TYPES;
 
@@ -34,34 +32,37 @@ public class LordLoop extends Lord{
     	
     	long start = System.currentTimeMillis();
     	
+    	this.prepare_pair_prefilter();
+    	
     	// Threads
-        IntHolder globalIndex = new IntHolder(0);
-        Thread[] threads = new Thread[this.thread_count];
+        ChunkScheduler scheduler = new ChunkScheduler(this.selectorID_records.length, this.thread_count);
+        CancellationToken token = this.get_run_token();
+        scheduler.setCancellationToken(token);
+        Runnable[] tasks = new Runnable[this.thread_count];
+        int[] example_order = this.get_example_order();
     	
-		List<Map<String, RuleInfo>> ruleSet_list = new ArrayList<Map<String, RuleInfo>>(this.thread_count);
+		RuleStore rule_store = new RuleStore(this.selectorID_records.length);	// shared by all threads
+		StreamingRuleFilter rule_filter = this.create_rule_filter(rule_store);
+		this.start_search_telemetry(scheduler, rule_store);
+		SearchContext search_context = this.create_search_context();
 		for(int i=0; i<this.thread_count; i++){
-			Map<String, RuleInfo> rule_set = new HashMap<String, RuleInfo>();
-			ruleSet_list.add(rule_set);
-			
-			threads[i] = new SearchRuleThread_LordLoop(this.selectorID_records,
+			tasks[i] = new SearchRuleThread_LordLoop(this.selectorID_records,
+													example_order,
 													this.selector_nlists,
 													this.selector_nlist_map,
-													rule_set,
+													rule_store,
+													rule_filter,
 													metric_type,
 													arg,
-													globalIndex, i);
-			
-			threads[i].start();
+													search_context.for_thread(i),
+													scheduler, i);
 		}
 		
-		try {
-			for(int i=0; i<this.thread_count; i++) threads[i].join();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}	
+		LearnerExecutor.invoke_all(this.getExecutor(), tasks, token);
+		this.check_cancellation(token, "search");	
 		
 		// Build the RuleManager
-		this.rm = new RuleManager(this.default_classID, ruleSet_list, this.selectorID_records, this.thread_count);
+		this.build_rule_manager(rule_store, rule_filter, token);
 		    	
     	return System.currentTimeMillis()-start;
     }
@@ -5,13 +5,13 @@
 
 package rl.eg;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import rl.IntHolder;
-import rl.RuleInfo;
+import rl.CancellationToken;
+import rl.ChunkScheduler;
+import rl.ConcurrentRTree;
+import rl.CoverageBitmap;
+import rl.LearnerExecutor;
+import rl.RuleStore;
+import rl.SearchContext;
 import utilities.MemoryHistogramer;
 import evaluations.HeuristicMetricFactory.METRIC_TYPES;
 
@@ -19,14 +19,42 @@ import evaluations.HeuristicMetricFactory.METRIC_TYPES;
 /**
  * Implementation of multi-thread LORD* (or called LORD-Start) algorithm to reduce running time
  * </br>Parallel version for the approach of searching for a locally optimal rule for each training example
+ * </br>Threads share one ConcurrentRTree of the found rules, an example correctly classified by the rules found so far by any thread is skipped
  */
 public class LordStar extends Lord{
-	public RuleManager rm;
+	private boolean coverage_bitmap = false;
+	private long searched_count = 0;	// examples searched for a rule in the last learning
+	private long skipped_count = 0;		// examples skipped in the last learning, already classified correctly by found rules
 	
     public LordStar(){
         super();
     }
     
+    /**
+     * Mark the training examples correctly classified by the found rules in a shared bitmap (see CoverageBitmap),
+     * instead of finding their covering rules in the shared rule tree. When a rule is found, the examples it covers are marked in bulk
+     * from the Nlist of its body, so the check of an example is one bit test. The learned rules are the same.
+     * </br>Default value is false.
+     * @param coverage_bitmap
+     */
+    public void setCoverageBitmap(boolean coverage_bitmap){
+    	this.coverage_bitmap = coverage_bitmap;
+    }
+    
+    /**
+     * @return the number of examples searched for a rule in the last learning
+     */
+    public long getSearchedCount(){
+    	return this.searched_count;
+    }
+    
+    /**
+     * @return the number of examples skipped in the last learning, because the found rules already classify them correctly
+     */
+    public long getSkippedCount(){
+    	return this.skipped_count;
+    }
+    
     ///////////////////////////////////////////// LEARNING PHASE //////////////////////////////////////////////    
     public long learning(METRIC_TYPES metric_type, double arg){
     	if(this.row_count * this.attr_count > 1000000 * 20){
@@ -35,46 +63,58 @@ public class LordStar extends Lord{
     	
     	long start = System.currentTimeMillis();
     	
+    	this.prepare_pair_prefilter();
+    	
     	// Threads
-        IntHolder globalIndex = new IntHolder(0);
-        Thread[] threads = new Thread[this.thread_count];
+        ChunkScheduler scheduler = new ChunkScheduler(this.selectorID_records.length, this.thread_count);
+        CancellationToken token = this.get_run_token();
+        scheduler.setCancellationToken(token);
+        SearchRuleThread_LordStar[] tasks = new SearchRuleThread_LordStar[this.thread_count];
+        int[] example_order = this.get_example_order();
     	
-		List<Map<String, RuleInfo>> ruleSet_list = new ArrayList<Map<String, RuleInfo>>(this.thread_count);
+		RuleStore rule_store = new RuleStore(this.selectorID_records.length);	// shared by all threads
+		StreamingRuleFilter rule_filter = this.create_rule_filter(rule_store);
+		this.start_search_telemetry(scheduler, rule_store);
+		SearchContext search_context = this.create_search_context();
+		// rules found by any thread let all threads skip the covered examples
+		ConcurrentRTree rule_tree = null;
+		CoverageBitmap coverage = null;
+		if(this.coverage_bitmap) coverage = new CoverageBitmap(this.selectorID_records, this.selector_nlists);
+		else rule_tree = new ConcurrentRTree();
+		
 		for(int i=0; i<this.thread_count; i++){
-			Map<String, RuleInfo> rule_set = new HashMap<String, RuleInfo>();
-			ruleSet_list.add(rule_set);
-			
-			threads[i] = new SearchRuleThread_LordStar(this.selectorID_records,
+			tasks[i] = new SearchRuleThread_LordStar(this.selectorID_records,
+											example_order,
 											this.selector_nlists,
 											this.selector_nlist_map,
-											rule_set,
+											rule_store,
+											rule_filter,
+											rule_tree,
+											coverage,
 											metric_type,
 											arg,
-											globalIndex, i);
-			
-			threads[i].start();
+											search_context.for_thread(i),
+											scheduler, i);
 		}
 		
-		try {
-			for(int i=0; i<this.thread_count; i++) threads[i].join();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+		LearnerExecutor.invoke_all(this.getExecutor(), tasks, token);
+		this.check_cancellation(token, "search");
+		this.searched_count = this.skipped_count = 0;
+		for(SearchRuleThread_LordStar task : tasks){
+			this.searched_count += task.searched_count;
+			this.skipped_count += task.skipped_count;
 		}
 		
 		// How many before-filtered rules are there? uncomment the below code block
-		/*Map<String, RuleInfo> before_filter_rules = new HashMap<String, RuleInfo>();
-		for(Map<String, RuleInfo> set : ruleSet_list){
-			before_filter_rules.putAll(set);
-		}
-		System.out.println("Total before-filter rules: " + before_filter_rules.size());
-		for(RuleInfo rule : before_filter_rules.values()){
+		/*System.out.println("Total before-filter rules: " + rule_store.size());
+		for(RuleInfo rule : rule_store){
 			System.out.println(rule.content());
 		}
 		System.out.println("----------------End before-filter rule set-----------------");
 		*/
 		
 		// Build the RuleManager
-		this.rm = new RuleManager(this.default_classID, ruleSet_list, this.selectorID_records, this.thread_count);
+		this.build_rule_manager(rule_store, rule_filter, token);
     	
     	return System.currentTimeMillis()-start;
     }
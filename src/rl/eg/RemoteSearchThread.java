@@ -0,0 +1,152 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl.eg;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rl.CancellationToken;
+import rl.RuleInfo;
+import rl.RuleStore;
+import evaluations.HeuristicMetricFactory.METRIC_TYPES;
+
+/**
+ * Coordinator side of one worker connection of DistributedLord: ships the snapshot, then gives ranges of examples
+ * to the worker one by one and adds the returned rules to the shared RuleStore.
+ * </br>Rules of a range are added only when the whole range is received, so a range of a failed worker is put back
+ * to the queue and searched again by another worker without partial results.
+ * </br>Threads without a range block on the queue: a range put back by a failed worker is taken at once,
+ * and the thread finishing the last range puts NO_MORE_RANGES to release the others.
+ */
+class RemoteSearchThread implements Runnable{
+	/** Put to the queue when all ranges are done, every thread taking it puts it back for the other waiting threads */
+	static final int[] NO_MORE_RANGES = new int[0];
+	private static final long CANCELLATION_CHECK_MILLIS = 100;	// the longest wait on the queue before checking the token
+	
+	private Socket socket;
+	private File snapshot;
+	private METRIC_TYPES metric_type;
+	private double arg;
+	private BlockingQueue<int[]> ranges;
+	private AtomicInteger remaining_range_count;
+	private RuleStore rule_store;
+	private CancellationToken token;
+	private int id;
+
+	public RemoteSearchThread(Socket socket,
+							File snapshot,
+							METRIC_TYPES metric_type,
+							double arg,
+							BlockingQueue<int[]> ranges,
+							AtomicInteger remaining_range_count,
+							RuleStore rule_store,
+							CancellationToken token,
+							int id){
+		this.socket = socket;
+		this.snapshot = snapshot;
+		this.metric_type = metric_type;
+		this.arg = arg;
+		this.ranges = ranges;
+		this.remaining_range_count = remaining_range_count;
+		this.rule_store = rule_store;
+		this.token = token;
+		this.id = id;
+	}
+
+	public void run(){
+		long start = System.currentTimeMillis();
+		int range_count = 0;
+		int found_count = 0;	// rules newly added from this worker
+		int[] range = null;
+
+		try{
+			DataInputStream input = new DataInputStream(new BufferedInputStream(this.socket.getInputStream(), 1<<16));
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream(), 1<<16));
+
+			this.send_header(output);
+			if(input.readInt() != DistributedLord.MSG_READY) throw new IOException("Worker is not ready");
+
+			List<RuleInfo> rules = new ArrayList<RuleInfo>();
+			while(!this.token.is_cancelled()){
+				// Other workers may still put back their ranges if they fail, so wait until all ranges are done
+				range = this.ranges.poll(CANCELLATION_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+				if(range == null) continue;
+				if(range == NO_MORE_RANGES){
+					this.ranges.add(range);
+					range = null;
+					break;
+				}
+
+				output.writeInt(DistributedLord.CMD_RANGE);
+				output.writeInt(range[0]);
+				output.writeInt(range[1]);
+				output.flush();
+
+				if(input.readInt() != DistributedLord.MSG_RULES) throw new IOException("Unexpected message from worker");
+				int rule_count = input.readInt();
+				rules.clear();
+				for(int i=0; i<rule_count; i++) rules.add(DistributedLord.read_rule(input));
+
+				for(RuleInfo rule : rules){
+					if(this.rule_store.add(rule) == rule) found_count++;
+				}
+				range = null;
+				range_count++;
+				if(this.remaining_range_count.decrementAndGet() == 0) this.ranges.add(NO_MORE_RANGES);
+			}
+
+			output.writeInt(DistributedLord.CMD_DONE);
+			output.flush();
+		}catch(IOException e){
+			System.out.println("\t" + this.getClass().getSimpleName() + " " + this.id + " lost its worker: " + e.getMessage());
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}finally{
+			if(range != null) this.ranges.add(range);	// let another worker or the coordinator do it
+		}
+
+		// Just for testing
+		StringBuilder sb = new StringBuilder(100);
+		sb.append('\t').append(this.getClass().getSimpleName()).append(' ')
+		.append(id).append(" did ").append(range_count).append(" ranges, founds ").append(found_count)
+		.append(" rules, finished in ").append(System.currentTimeMillis()-start).append(" ms");
+		System.out.println(sb.toString());
+	}
+
+	/**
+	 * Send protocol header, metric, argument and the snapshot
+	 */
+	private void send_header(DataOutputStream output) throws IOException{
+		output.writeInt(DistributedLord.PROTOCOL_MAGIC);
+		output.writeInt(DistributedLord.PROTOCOL_VERSION);
+		output.writeInt(this.metric_type.ordinal());
+		output.writeDouble(this.arg);
+		output.writeLong(this.snapshot.length());
+
+		InputStream file_input = new FileInputStream(this.snapshot);
+		try{
+			byte[] buffer = new byte[1<<16];
+			int length;
+			while((length = file_input.read(buffer)) > 0) output.write(buffer, 0, length);
+		}finally{
+			file_input.close();
+		}
+		output.flush();
+	}
+
+}
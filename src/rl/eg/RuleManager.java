@@ -6,14 +6,26 @@
 package rl.eg;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
-import rl.IntHolder;
+import rl.CancellationToken;
+import rl.ChunkScheduler;
+import rl.CompiledRTree;
+import rl.InvertedRuleIndex;
+import rl.LearnerExecutor;
+import rl.LearningTelemetry;
+import rl.Prediction;
+import rl.PredictionCache;
 import rl.RTree;
 import rl.RuleComparator;
 import rl.RuleInfo;
+import rl.RuleMatcher;
+import rl.RuleStore;
 
 public class RuleManager {
 	public int defaultClassID;
@@ -23,6 +35,16 @@ public class RuleManager {
 	
 	public List<RuleInfo> covering_rules = null;
 	public RuleInfo selected_rule = null;
+	private Prediction default_prediction;
+	private volatile RuleMatcher matcher = null;	// for the reentrant prediction, chosen when the rules are set
+	
+	// Optional caches of the results of repetitive examples, null if not used
+	private volatile PredictionCache<Prediction> prediction_cache = null;
+	private volatile PredictionCache<List<RuleInfo>> covering_rule_cache = null;
+	
+	// Tasks building the rule trees, see RTree.build_inverse_order, one task in the calling thread until a filter sets them
+	private int thread_count = 1;
+	private ExecutorService executor = null;
 	
 	/**
 	 * Find the best covering rule.
@@ -31,7 +53,7 @@ public class RuleManager {
 	 * @return the best covering rule
 	 */
 	public RuleInfo get_best_covering_rule(int[] example){
-		this.covering_rules = this.ruleTree.find_covering_rules(example);
+		this.covering_rules = this.find_covering_rules(example, example.length-1);
 		
 		if(covering_rules.size()==0){
 			return (selected_rule = null);
@@ -47,7 +69,7 @@ public class RuleManager {
 	 * @return the best covering rule
 	 */
 	public RuleInfo get_best_covering_rule_noclass(int[] example){
-		this.covering_rules = this.ruleTree.find_covering_rules_noclass(example);
+		this.covering_rules = this.find_covering_rules(example, example.length);
 		
 		if(covering_rules.size()==0){
 			return (selected_rule = null);
@@ -56,12 +78,128 @@ public class RuleManager {
 		return (selected_rule = RuleComparator.select_best_rule(this.covering_rules));
 	}
 	
+	/**
+	 * @return the covering rules of the selector IDs [0, length) of the example from the cache if it is set, otherwise from 'ruleTree'.
+	 * A cached list is shared, it is read-only.
+	 */
+	private List<RuleInfo> find_covering_rules(int[] example, int length){
+		PredictionCache<List<RuleInfo>> cache = this.covering_rule_cache;
+		List<RuleInfo> covering_rules;
+		if(cache != null && (covering_rules = cache.get(example, length)) != null) return covering_rules;
+		
+		covering_rules = (length == example.length) ? this.ruleTree.find_covering_rules_noclass(example)
+													: this.ruleTree.find_covering_rules(example);
+		if(cache != null) cache.put(example, length, Collections.unmodifiableList(covering_rules));
+		return covering_rules;
+	}
+	
+	/**
+	 * Reentrant prediction on the compiled rule tree, calls from many threads are safe as long as the rules are not changed.
+	 * </br>If the prediction cache is set, repeated examples are answered from it without searching the rules.
+	 * @param example selector IDs of an example, increasingly sorted in [0, length)
+	 * @param length the number of selector IDs to match, without the target class
+	 * @return the class of the best covering rule, or the default class
+	 */
+	public Prediction predict(int[] example, int length){
+		PredictionCache<Prediction> cache = this.prediction_cache;
+		Prediction prediction;
+		if(cache != null && (prediction = cache.get(example, length)) != null){
+			return prediction.is_default() ? this.get_default_prediction() : prediction;
+		}
+		
+		RuleInfo best_rule = this.get_matcher().find_best_covering_rule(example, length);
+		prediction = (best_rule != null) ? new Prediction(best_rule.headID, best_rule) : this.get_default_prediction();
+		if(cache != null) cache.put(example, length, prediction);
+		return prediction;
+	}
+	
+	/**
+	 * One shared immutable result for the default class, a racy update only creates an equal one
+	 */
+	private Prediction get_default_prediction(){
+		Prediction prediction = this.default_prediction;
+		if(prediction == null || prediction.classID != this.defaultClassID){
+			this.default_prediction = prediction = new Prediction(this.defaultClassID, null);
+		}
+		return prediction;
+	}
+	
+	/**
+	 * Cache the results of 'predict' and the covering rules of 'get_best_covering_rule' and 'get_best_covering_rule_noclass'
+	 * for repetitive examples. The caches are cleared when the rules are changed by this manager.
+	 * @param capacity the maximum number of results of each cache, 0 to remove the caches
+	 */
+	public void setPredictionCache(int capacity){
+		if(capacity > 0){
+			this.prediction_cache = new PredictionCache<Prediction>(capacity);
+			this.covering_rule_cache = new PredictionCache<List<RuleInfo>>(capacity);
+		}else{
+			this.prediction_cache = null;
+			this.covering_rule_cache = null;
+		}
+	}
+	
+	/**
+	 * @return the cache of 'predict' with its hit and eviction counters, null if not set
+	 */
+	public PredictionCache<Prediction> getPredictionCache(){
+		return this.prediction_cache;
+	}
+	
+	/**
+	 * @return the cache of 'get_best_covering_rule' and 'get_best_covering_rule_noclass', null if not set
+	 */
+	public PredictionCache<List<RuleInfo>> getCoveringRuleCache(){
+		return this.covering_rule_cache;
+	}
+	
+	private void clear_caches(){
+		PredictionCache<Prediction> prediction_cache = this.prediction_cache;
+		if(prediction_cache != null) prediction_cache.clear();
+		PredictionCache<List<RuleInfo>> covering_rule_cache = this.covering_rule_cache;
+		if(covering_rule_cache != null) covering_rule_cache.clear();
+	}
+	
+	/**
+	 * @return the matcher of 'ruleTree', chosen by 'set_rules'. It is built again with the same engine if 'ruleTree' is replaced,
+	 * e.g. by 'truncate', and is a CompiledRTree for the trees not built by 'set_rules'.
+	 */
+	private RuleMatcher get_matcher(){
+		RuleMatcher matcher = this.matcher;
+		if(matcher == null || !matcher.is_compiled_from(this.ruleTree)){
+			synchronized(this){
+				matcher = this.matcher;
+				if(matcher == null || !matcher.is_compiled_from(this.ruleTree)){
+					if(matcher instanceof InvertedRuleIndex) matcher = new InvertedRuleIndex(this.ruleTree);
+					else matcher = new CompiledRTree(this.ruleTree);
+					this.matcher = matcher;
+				}
+			}
+		}
+		return matcher;
+	}
+	
 	/**
 	 * Sort rules in the rule list decreasingly based on heuristic values and then true positive values.
 	 */
 	public void sort_rules(){
-		RuleComparator c = new RuleComparator();
-		this.ruleList.sort(c);
+		sort_rules(this.ruleList);
+	}
+	
+	/**
+	 * Sort by RuleComparator with a parallel merge sort, which is stable like List.sort
+	 */
+	private static void sort_rules(List<RuleInfo> rule_list){
+		RuleInfo[] rules = rule_list.toArray(new RuleInfo[rule_list.size()]);
+		Arrays.parallelSort(rules, new RuleComparator());
+		for(int i=0; i<rules.length; i++) rule_list.set(i, rules[i]);
+	}
+	
+	/**
+	 * @return an RTree of the rules, built by many tasks for large rule lists
+	 */
+	private RTree build_tree(List<RuleInfo> rules){
+		return RTree.build_inverse_order(rules, this.thread_count, this.executor);
 	}
 	
 	/**
@@ -74,10 +212,8 @@ public class RuleManager {
 		for(int i=0; i<remain; i++) this.truncatedRuleList.add(this.ruleList.get(i));
 		
 		//rebuild the rTree
-		this.ruleTree = new RTree();
-		for(RuleInfo rule : this.truncatedRuleList){
-			this.ruleTree.insert_rule_inverse_order(rule.body, rule);
-		}
+		this.ruleTree = this.build_tree(this.truncatedRuleList);
+		this.clear_caches();
 	}
 	
 	/////////////////////////////////////////////////////// CONSTRUCTORS ///////////////////////////////////////////////////////
@@ -92,8 +228,7 @@ public class RuleManager {
 		
 		List<RuleInfo> rule_list = new ArrayList<RuleInfo>(rule_set.size());
 		for(RuleInfo rule : rule_set.values()) rule_list.add(rule);
-		RuleComparator c = new RuleComparator();
-		rule_list.sort(c);
+		sort_rules(rule_list);
 		int remain_count = (int) (rule_list.size()*0.75);
 		
 		// Build the corresponding RTree
@@ -169,51 +304,155 @@ public class RuleManager {
 						List<Map<String, RuleInfo>> ruleSet_list,
 						int[][] selectorID_records,
 						int thread_count){
+		this(default_class_id, to_rule_store(ruleSet_list), selectorID_records, thread_count, LearnerExecutor.shared());
+	}
+	
+	/**
+	 * Filter from a rule store, with 'thread_count' tasks running on 'executor'
+	 * @param default_class_id
+	 * @param rule_store
+	 * @param selectorID_records
+	 * @param thread_count
+	 * @param executor
+	 */
+	public RuleManager(int default_class_id,
+						RuleStore rule_store,
+						int[][] selectorID_records,
+						int thread_count,
+						ExecutorService executor){
+		this(default_class_id, rule_store, selectorID_records, thread_count, executor, null);
+	}
+	
+	/**
+	 * Filter from a rule store, with 'thread_count' tasks running on 'executor', and report the filter progress to 'telemetry'
+	 * @param default_class_id
+	 * @param rule_store
+	 * @param selectorID_records
+	 * @param thread_count
+	 * @param executor
+	 * @param telemetry null if not used
+	 */
+	public RuleManager(int default_class_id,
+						RuleStore rule_store,
+						int[][] selectorID_records,
+						int thread_count,
+						ExecutorService executor,
+						LearningTelemetry telemetry){
+		this(default_class_id, rule_store, selectorID_records, thread_count, executor, telemetry, null);
+	}
+	
+	/**
+	 * Filter from a rule store, with 'thread_count' tasks running on 'executor'.
+	 * </br>If 'token' is cancelled before the filter finishes, all rules of 'rule_store' are kept: a larger but usable rule set.
+	 * @param default_class_id
+	 * @param rule_store
+	 * @param selectorID_records
+	 * @param thread_count
+	 * @param executor
+	 * @param telemetry null if not used
+	 * @param token null if only interrupts stop the filter
+	 */
+	public RuleManager(int default_class_id,
+						RuleStore rule_store,
+						int[][] selectorID_records,
+						int thread_count,
+						ExecutorService executor,
+						LearningTelemetry telemetry,
+						CancellationToken token){
 		this.defaultClassID = default_class_id;
-		
-		// Build the corresponding RTree
-		RTree tmp_tree = new RTree();
+		this.filter_rules(rule_store, selectorID_records, thread_count, executor, telemetry, token);
+	}
+	
+	/**
+	 * Take the rules selected by a filter pipelined with the rule search, the search must be finished
+	 * @param default_class_id
+	 * @param rule_filter
+	 */
+	public RuleManager(int default_class_id, StreamingRuleFilter rule_filter){
+		this.defaultClassID = default_class_id;
+		this.set_rules(rule_filter.finish());
+	}
+	
+	/**
+	 * Filter again from a rule store and replace the current rules in place, e.g. after an incremental update of the training data.
+	 * </br>The rule statistics (p, n, heuristic value) are expected to be up-to-date.
+	 * @param default_class_id
+	 * @param rule_store
+	 * @param selectorID_records
+	 * @param thread_count
+	 * @param executor
+	 */
+	public void update(int default_class_id,
+						RuleStore rule_store,
+						int[][] selectorID_records,
+						int thread_count,
+						ExecutorService executor){
+		this.defaultClassID = default_class_id;
+		this.truncatedRuleList = null;
+		this.covering_rules = null;
+		this.selected_rule = null;
+		this.filter_rules(rule_store, selectorID_records, thread_count, executor, null, null);
+	}
+	
+	private static RuleStore to_rule_store(List<Map<String, RuleInfo>> ruleSet_list){
+		int rule_count = 0;
+		for(Map<String, RuleInfo> rule_set : ruleSet_list) rule_count += rule_set.size();
+		RuleStore rule_store = new RuleStore(rule_count);
 		for(Map<String, RuleInfo> rule_set : ruleSet_list){
-			for(RuleInfo rule : rule_set.values()){
-				tmp_tree.insert_rule_inverse_order(rule.body, rule);
-			}
+			for(RuleInfo rule : rule_set.values()) rule_store.add(rule);
 		}
+		return rule_store;
+	}
+	
+	/**
+	 * For each example, keep the best full covering rule. Then build 'ruleList' and 'ruleTree' from the kept rules.
+	 */
+	private void filter_rules(RuleStore rule_store,
+								int[][] selectorID_records,
+								int thread_count,
+								ExecutorService executor,
+								LearningTelemetry telemetry,
+								CancellationToken token){
+		this.thread_count = thread_count;
+		this.executor = executor;
+		if(token == null) token = new CancellationToken();	// cancelled if the calling thread is interrupted
+		if(token.is_cancelled()){
+			this.set_rules(rule_store);
+			return;
+		}
+		
+		// Build the corresponding RTree
+		RTree tmp_tree = this.build_tree(rule_store.values());
 		
-		// Filter rules
-		IntHolder globalIndex = new IntHolder(0);
-        Thread[] threads = new Thread[thread_count];
-		List<Map<String, RuleInfo>> filtered_rule_sets = new ArrayList<Map<String, RuleInfo>>(thread_count);
+		// Filter rules, all threads add the selected rules into one store
+		ChunkScheduler scheduler = new ChunkScheduler(selectorID_records.length, thread_count);
+		scheduler.setCancellationToken(token);
+        Runnable[] tasks = new Runnable[thread_count];
+		RuleStore filtered_rule_store = new RuleStore(rule_store.size());
+		if(telemetry != null) telemetry.start_filter(scheduler);
 		
+		RuleMatcher matcher = InvertedRuleIndex.select_matcher(tmp_tree, rule_store.size());
 		for(int i=0; i<thread_count; i++){
-			Map<String, RuleInfo> filtered_rule_set = new HashMap<String, RuleInfo>();
-			filtered_rule_sets.add(filtered_rule_set);
-			
-			threads[i] = new FilterRuleThread(tmp_tree,
+			tasks[i] = new FilterRuleThread(matcher,
 											selectorID_records,
-											filtered_rule_set,
-											globalIndex, i);
-			
-			threads[i].start();
-		}
-		
-		try {
-			for(int i=0; i<thread_count; i++) threads[i].join();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+											filtered_rule_store,
+											scheduler, i);
 		}
 		
-		// Build the corresponding RTree
-		int rule_count = 0;
-		for(Map<String, RuleInfo> rule_set : filtered_rule_sets) rule_count += rule_set.size();
-		Map<String, RuleInfo> ruleSet = new HashMap<String, RuleInfo>(rule_count);
-		for(Map<String, RuleInfo> rule_set : filtered_rule_sets) ruleSet.putAll(rule_set);
+		LearnerExecutor.invoke_all(executor, tasks, token);
 		
-		this.ruleTree = new RTree();
-		this.ruleList = new ArrayList<RuleInfo>(ruleSet.size());
-		for(RuleInfo rule : ruleSet.values()){
-			this.ruleTree.insert_rule_inverse_order(rule.body, rule);
-			this.ruleList.add(rule);
-		}
+		// A cancelled filter has not seen all examples, keep all rules
+		this.set_rules(scheduler.is_complete() ? filtered_rule_store : rule_store);
+	}
+	
+	/**
+	 * Build 'ruleList' and 'ruleTree' from the filtered rules, and the matcher of the predictions (see InvertedRuleIndex.select_matcher)
+	 */
+	private void set_rules(RuleStore filtered_rule_store){
+		this.ruleList = filtered_rule_store.values();
+		this.ruleTree = this.build_tree(this.ruleList);
+		this.matcher = InvertedRuleIndex.select_matcher(this.ruleTree, this.ruleList.size());
+		this.clear_caches();
 	}
 	
 	public RuleManager(int default_class_id,
@@ -0,0 +1,113 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl.eg;
+
+import java.util.Map;
+
+import rl.ChunkScheduler;
+import rl.INlist;
+import rl.RuleInfo;
+import rl.RuleSearcher;
+import rl.RuleStore;
+import rl.SearchContext;
+import evaluations.HeuristicMetric;
+import evaluations.HeuristicMetricFactory;
+import evaluations.HeuristicMetricFactory.METRIC_TYPES;
+
+/**
+ * Search for a locally best rule for each example in a given list of example indices,
+ * the found rule of each example is recorded to 'example_rules' at the index of the example.
+ */
+class SearchRuleThread_LordIncremental implements Runnable{
+	private int[][] selectorID_records;
+	private int[] example_indices;
+	private RuleInfo[] example_rules;
+	private INlist[] selector_nlists;
+	private Map<String, INlist> selector_nlist_map;
+	private RuleStore rule_store;
+	private METRIC_TYPES metric_type;
+	private double arg;
+	private SearchContext search_context;
+	private ChunkScheduler scheduler;
+	private int id;
+
+	public SearchRuleThread_LordIncremental(int[][] selectorID_records,
+						int[] example_indices,
+						RuleInfo[] example_rules,
+						INlist[] selector_nlists,
+						Map<String, INlist> selector_nlist_map,
+						RuleStore rule_store,
+						METRIC_TYPES metric_type,
+						double arg,
+						SearchContext search_context,
+						ChunkScheduler scheduler,
+						int id){
+		this.selectorID_records = selectorID_records;
+		this.example_indices = example_indices;
+		this.example_rules = example_rules;
+		this.selector_nlists = selector_nlists;
+		this.selector_nlist_map = selector_nlist_map;
+		this.rule_store = rule_store;
+		this.metric_type = metric_type;
+		this.arg = arg;
+		this.search_context = search_context;
+		this.scheduler = scheduler;
+		this.id = id;
+	}
+
+	public void run(){
+		long start = System.currentTimeMillis();
+		int example_count = this.example_indices.length;
+
+		HeuristicMetric metric = HeuristicMetricFactory.getInterestMetric(this.metric_type);
+		double[] arguments = new double[7];
+    	arguments[3] = this.selectorID_records.length;
+    	arguments[6] = this.arg;
+
+    	int[] example;
+    	int example_index, example_classID;
+		RuleInfo greedy_best_rule;
+		int found_count = 0;	// rules newly added by this thread
+
+		ChunkScheduler.Range range = new ChunkScheduler.Range();
+		while (this.scheduler.next(range)){
+			for(int index=range.start; index<range.end; index++){
+				example_index = this.example_indices[index];
+				example = this.selectorID_records[example_index];
+
+				if(example.length < 2){
+					this.example_rules[example_index] = null;
+					continue;
+				}
+
+				example_classID = example[example.length-1];
+				int[] body_selector_IDs = new int[example.length-1];
+				System.arraycopy(example, 0, body_selector_IDs, 0, body_selector_IDs.length);
+
+				arguments[4] = this.selector_nlists[example_classID].supportCount();
+				arguments[5] = arguments[3] - arguments[4];
+
+				greedy_best_rule = RuleSearcher.search_for_greedy_best_rule(this.selector_nlist_map,
+																			body_selector_IDs,
+																			example_classID,
+																			metric,
+																			arguments,
+																			this.search_context);
+
+				this.example_rules[example_index] = this.rule_store.add(greedy_best_rule);
+				if(this.example_rules[example_index] == greedy_best_rule) found_count++;
+			}
+		}
+
+		// Just for testing
+		StringBuilder sb = new StringBuilder(100);
+		sb.append('\t').append(this.getClass().getSimpleName()).append(' ')
+		.append(id).append(" founds ").append(found_count).append(" rules, finished in ")
+		.append(System.currentTimeMillis()-start).append(" ms");
+		System.out.println(sb.toString());
+	}
+
+}
@@ -7,39 +7,50 @@ package rl.eg;
 
 import java.util.Map;
 
+import rl.ChunkScheduler;
 import rl.INlist;
-import rl.IntHolder;
 import rl.RuleInfo;
 import rl.RuleSearcher;
+import rl.RuleStore;
+import rl.SearchContext;
 import evaluations.HeuristicMetric;
 import evaluations.HeuristicMetricFactory;
 import evaluations.HeuristicMetricFactory.METRIC_TYPES;
 
-class SearchRuleThread_LordLoop extends Thread{
+class SearchRuleThread_LordLoop implements Runnable{
 	private int[][] selectorID_records;
+	private int[] example_order;
 	private INlist[] selector_nlists;
 	private Map<String, INlist> selector_nlist_map;
-	private Map<String, RuleInfo> rule_set;
+	private RuleStore rule_store;
+	private StreamingRuleFilter rule_filter;
 	private METRIC_TYPES metric_type;
 	private double arg;
-	private IntHolder globalIndex;
+	private SearchContext search_context;
+	private ChunkScheduler scheduler;
 	private int id;
 	
 	public SearchRuleThread_LordLoop(int[][] selectorID_records,
+						int[] example_order,
 						INlist[] selector_nlists,
 						Map<String, INlist> selector_nlist_map,
-						Map<String, RuleInfo> rule_set,
+						RuleStore rule_store,
+						StreamingRuleFilter rule_filter,
 						METRIC_TYPES metric_type,
 						double arg,
-						IntHolder globalIndex,
+						SearchContext search_context,
+						ChunkScheduler scheduler,
 						int id){
 		this.selectorID_records = selectorID_records;
+		this.example_order = example_order;
 		this.selector_nlists = selector_nlists;
 		this.selector_nlist_map = selector_nlist_map;
-		this.rule_set = rule_set;
+		this.rule_store = rule_store;
+		this.rule_filter = rule_filter;
 		this.metric_type = metric_type;
 		this.arg = arg;
-		this.globalIndex = globalIndex;
+		this.search_context = search_context;
+		this.scheduler = scheduler;
 		this.id = id;
 	}
 	
@@ -55,37 +66,42 @@ class SearchRuleThread_LordLoop extends Thread{
     	int[] example;
     	int example_classID;
 		RuleInfo greedy_best_rule;
+		int found_count = 0;	// rules newly added by this thread
 		
-		while (true){
-			synchronized(globalIndex){
-				if(this.globalIndex.value >= row_count) break;
-				example = this.selectorID_records[this.globalIndex.value];
-				this.globalIndex.value++;
-			}
+		ChunkScheduler.Range range = new ChunkScheduler.Range();
+		while (this.scheduler.next(range)){
+			for(int position=range.start; position<range.end; position++){
+				int index = (this.example_order == null) ? position : this.example_order[position];
+				example = this.selectorID_records[index];
 			
-			if(example.length < 2) continue;
+				if(example.length < 2) continue;
 			
-			example_classID = example[example.length-1];
-			int[] body_selector_IDs = new int[example.length-1];
-			System.arraycopy(example, 0, body_selector_IDs, 0, body_selector_IDs.length);
+				example_classID = example[example.length-1];
+				int[] body_selector_IDs = new int[example.length-1];
+				System.arraycopy(example, 0, body_selector_IDs, 0, body_selector_IDs.length);
 			
-			arguments[4] = this.selector_nlists[example_classID].supportCount();
-			arguments[5] = arguments[3] - arguments[4];
+				arguments[4] = this.selector_nlists[example_classID].supportCount();
+				arguments[5] = arguments[3] - arguments[4];
 			
-			greedy_best_rule = RuleSearcher.search_for_greedy_best_rule_loop(
-																		this.selector_nlist_map,
-																		body_selector_IDs,
-																		example_classID,
-																		metric,
-																		arguments);
+				greedy_best_rule = RuleSearcher.search_for_greedy_best_rule_loop(
+																			this.selector_nlist_map,
+																			body_selector_IDs,
+																			example_classID,
+																			metric,
+																			arguments,
+																			this.search_context);
 			
-			this.rule_set.put(greedy_best_rule.signature(), greedy_best_rule);
+				if(this.rule_store.add(greedy_best_rule) == greedy_best_rule){
+					found_count++;
+					if(this.rule_filter != null) this.rule_filter.add_rule(greedy_best_rule);
+				}
+			}
 		}
 		
 		// Just for testing
 		StringBuilder sb = new StringBuilder(100);
 		sb.append('\t').append(this.getClass().getSimpleName()).append(' ')
-		.append(id).append(" founds ").append(this.rule_set.size()).append(" rules, finished in ")
+		.append(id).append(" founds ").append(found_count).append(" rules, finished in ")
 		.append(System.currentTimeMillis()-start).append(" ms");
 		System.out.println(sb.toString());
 	}
@@ -8,47 +8,67 @@ package rl.eg;
 import java.util.List;
 import java.util.Map;
 
+import rl.ChunkScheduler;
+import rl.ConcurrentRTree;
+import rl.CoverageBitmap;
 import rl.INlist;
-import rl.IntHolder;
-import rl.RTree;
 import rl.RuleComparator;
 import rl.RuleInfo;
 import rl.RuleSearcher;
+import rl.RuleStore;
+import rl.SearchContext;
 import evaluations.HeuristicMetric;
 import evaluations.HeuristicMetricFactory;
 import evaluations.HeuristicMetricFactory.METRIC_TYPES;
 
-class SearchRuleThread_LordStar extends Thread{
+class SearchRuleThread_LordStar implements Runnable{
 	private int[][] selectorID_records;
+	private int[] example_order;
 	private INlist[] selector_nlists;
 	private Map<String, INlist> selector_nlist_map;
-	private Map<String, RuleInfo> rule_set;
+	private RuleStore rule_store;
+	private StreamingRuleFilter rule_filter;
+	private ConcurrentRTree rule_tree;
+	private CoverageBitmap coverage;
 	private METRIC_TYPES metric_type;
 	private double arg;
-	private IntHolder globalIndex;
+	private SearchContext search_context;
+	private ChunkScheduler scheduler;
 	private int id;
 	
+	long searched_count = 0;	// examples searched for a rule
+	long skipped_count = 0;		// examples skipped, classified correctly by the found rules
+	
 	public SearchRuleThread_LordStar(int[][] selectorID_records,
+						int[] example_order,
 						INlist[] selector_nlists,
 						Map<String, INlist> selector_nlist_map,
-						Map<String, RuleInfo> rule_set,
+						RuleStore rule_store,
+						StreamingRuleFilter rule_filter,
+						ConcurrentRTree rule_tree,
+						CoverageBitmap coverage,
 						METRIC_TYPES metric_type,
 						double arg,
-						IntHolder globalIndex,
+						SearchContext search_context,
+						ChunkScheduler scheduler,
 						int id){
 		this.selectorID_records = selectorID_records;
+		this.example_order = example_order;
 		this.selector_nlists = selector_nlists;
 		this.selector_nlist_map = selector_nlist_map;
-		this.rule_set = rule_set;
+		this.rule_store = rule_store;
+		this.rule_filter = rule_filter;
+		this.rule_tree = rule_tree;
+		this.coverage = coverage;
 		this.metric_type = metric_type;
 		this.arg = arg;
-		this.globalIndex = globalIndex;
+		this.search_context = search_context;
+		this.scheduler = scheduler;
 		this.id = id;
 	}
 	
 	public void run(){
 		long start = System.currentTimeMillis();
-		RTree rTree = new RTree();
 		int row_count;
 		
 		HeuristicMetric metric = HeuristicMetricFactory.getInterestMetric(this.metric_type);
@@ -59,48 +79,66 @@ class SearchRuleThread_LordStar extends Thread{
     	int[] example;
     	int example_classID;
 		RuleInfo greedy_best_rule;
+		int found_count = 0;	// rules newly added by this thread
 		
-		while (true){
-			synchronized(globalIndex){
-				if(this.globalIndex.value >= row_count) break;
-				example = this.selectorID_records[this.globalIndex.value];
-				this.globalIndex.value++;
-			}
+		ChunkScheduler.Range range = new ChunkScheduler.Range();
+		while (this.scheduler.next(range)){
+			for(int position=range.start; position<range.end; position++){
+				int index = (this.example_order == null) ? position : this.example_order[position];
+				example = this.selectorID_records[index];
 			
-			if(example.length < 2) continue;	// empty body
+				if(example.length < 2) continue;	// empty body
 			
-			example_classID = example[example.length-1];
+				example_classID = example[example.length-1];
 			
-			List<RuleInfo> covering_rules = rTree.find_covering_rules(example);
-			RuleInfo selected_rule = null;
-			if(covering_rules.size() > 0 && (selected_rule = RuleComparator.select_best_rule(covering_rules)).headID == example_classID){
-				// if the current rule set can classify correctly the example, do not need find a local best rule for it.
-				continue;
-			}
+				RuleInfo selected_rule = null;
+				if(this.coverage != null){
+					// if the rules found by all threads can classify correctly the example, do not need find a local best rule for it.
+					if(this.coverage.is_covered(index)){
+						this.skipped_count++;
+						continue;
+					}
+					selected_rule = this.coverage.best_rule(index);
+				}else{
+					List<RuleInfo> covering_rules = this.rule_tree.find_covering_rules(example);
+					if(covering_rules.size() > 0 && (selected_rule = RuleComparator.select_best_rule(covering_rules)).headID == example_classID){
+						// if the rules found by all threads can classify correctly the example, do not need find a local best rule for it.
+						this.skipped_count++;
+						continue;
+					}
+				}
 			
-			// case: no covering rules or miss-classified
-			int[] body_selector_IDs = new int[example.length-1];
-			System.arraycopy(example, 0, body_selector_IDs, 0, body_selector_IDs.length);
+				// case: no covering rules or miss-classified
+				int[] body_selector_IDs = new int[example.length-1];
+				System.arraycopy(example, 0, body_selector_IDs, 0, body_selector_IDs.length);
 			
-			arguments[4] = this.selector_nlists[example_classID].supportCount();
-			arguments[5] = arguments[3] - arguments[4];
+				this.searched_count++;
+				arguments[4] = this.selector_nlists[example_classID].supportCount();
+				arguments[5] = arguments[3] - arguments[4];
 			
-			greedy_best_rule = RuleSearcher.search_for_greedy_best_rule(this.selector_nlist_map,
-																		body_selector_IDs,
-																		example_classID,
-																		metric,
-																		arguments);
+				greedy_best_rule = RuleSearcher.search_for_greedy_best_rule(this.selector_nlist_map,
+																			body_selector_IDs,
+																			example_classID,
+																			metric,
+																			arguments,
+																			this.search_context);
 			
-			if (selected_rule == null || RuleComparator.select_better_rule(selected_rule, greedy_best_rule) == greedy_best_rule){
-				this.rule_set.put(greedy_best_rule.signature(), greedy_best_rule);
-				rTree.insert_rule_inverse_order(greedy_best_rule.body, greedy_best_rule);
-			};
+				if (selected_rule == null || RuleComparator.select_better_rule(selected_rule, greedy_best_rule) == greedy_best_rule){
+					if(this.rule_store.add(greedy_best_rule) == greedy_best_rule){
+						found_count++;
+						if(this.rule_filter != null) this.rule_filter.add_rule(greedy_best_rule);
+						if(this.coverage != null) this.coverage.add_rule(greedy_best_rule);	// an existing rule is already marked
+					}
+					if(this.coverage == null) this.rule_tree.insert_rule_inverse_order(greedy_best_rule.body, greedy_best_rule);
+				};
+			}
 		}
 		
 		// Just for testing
 		StringBuilder sb = new StringBuilder(100);
 		sb.append('\t').append(this.getClass().getSimpleName()).append(' ')
-		.append(id).append(" founds ").append(this.rule_set.size()).append(" rules, finished in ")
+		.append(id).append(" founds ").append(found_count).append(" rules, searched ").append(this.searched_count)
+		.append(" examples, skipped ").append(this.skipped_count).append(" examples, finished in ")
 		.append(System.currentTimeMillis()-start).append(" ms");
 		System.out.println(sb.toString());
 	}
@@ -0,0 +1,180 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package rl.eg;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import rl.CancellationToken;
+import rl.ChunkScheduler;
+import rl.CompiledRTree;
+import rl.INlist;
+import rl.LearnerExecutor;
+import rl.LearningTelemetry;
+import rl.RTree;
+import rl.RowNodeIndex;
+import rl.RuleComparator;
+import rl.RuleInfo;
+import rl.RuleStore;
+import rl.SortedNlistBuilder;
+import rl.Supporter;
+
+/**
+ * Rule filtering pipelined with the rule search: the best full covering rule of each training example is kept up to date
+ * while rules are found, instead of a second pass over all examples after the search (see RuleManager).
+ * </br>A search thread passes each rule it newly adds to the rule store to 'add_rule', which expands the Nlist of the body and the head
+ * to the examples fully covered by the rule (see RowNodeIndex) and updates their best rules by CAS. So rule-major updates run
+ * in the search threads, and only a short reconciliation is left when the search finishes.
+ * </br>The selected rules are the same as the ones of RuleManager:
+ * </br> + the order of rules for an example is the heuristic value, then p, then the order of the bodies in the RTree,
+ * </br> + an RTree keeps one rule per body, so a rule beaten by another rule with the same body is dropped at 'finish',
+ * the examples for which it was the best are filtered again on an RTree of the remaining rules.
+ * </br>The filter also runs after the search on all found rules ('add_rules'): a rule-major pass parallel over the rules, instead of
+ * the example-major pass of RuleManager which looks up the rule tree for each example. It is cheaper when rules cover few examples.
+ */
+public class StreamingRuleFilter {
+	private final int[][] selectorID_records;
+	private final INlist[] selector_nlists;
+	private final RuleStore rule_store;
+	private final RowNodeIndex row_index;
+	private final AtomicReferenceArray<RuleInfo> best_rules;
+
+	/**
+	 * @param selectorID_records training records, each record is in ascending order and ends with the class ID
+	 * @param selector_nlists Nlists of selectors built from 'selectorID_records'
+	 * @param rule_store the store which receives all found rules
+	 */
+	public StreamingRuleFilter(int[][] selectorID_records, INlist[] selector_nlists, RuleStore rule_store){
+		this.selectorID_records = selectorID_records;
+		this.selector_nlists = selector_nlists;
+		this.rule_store = rule_store;
+		this.row_index = new RowNodeIndex(selectorID_records);
+		this.best_rules = new AtomicReferenceArray<RuleInfo>(selectorID_records.length);
+	}
+
+	/**
+	 * Update the best rules of the examples fully covered by the rule, called once per rule after adding it to the rule store
+	 * @param rule
+	 */
+	public void add_rule(RuleInfo rule){
+		// A rule with an empty body stays at the root of an RTree, it never covers an example
+		if(rule.body.length == 0 || !(rule.heuristic_value > -Double.MAX_VALUE)) return;
+
+		RuleInfo best_rule;
+		for(int row : this.row_index.covered_rows(this.create_rule_nlist(rule))){
+			do{
+				best_rule = this.best_rules.get(row);
+				if(best_rule != null && !is_better(rule, best_rule)) break;
+			}while(!this.best_rules.compareAndSet(row, best_rule, rule));
+		}
+	}
+
+	/**
+	 * Add all rules, with 'thread_count' tasks running on 'executor' which take the rules by chunks
+	 * @param rules distinct rules, e.g. the values of the rule store after the search
+	 * @param thread_count
+	 * @param executor
+	 * @param telemetry null if not used
+	 * @param token null if only interrupts stop the filter
+	 * @return true if all rules are added, false if the filter is cancelled
+	 */
+	public boolean add_rules(List<RuleInfo> rules,
+							int thread_count,
+							ExecutorService executor,
+							LearningTelemetry telemetry,
+							CancellationToken token){
+		if(token == null) token = new CancellationToken();	// cancelled if the calling thread is interrupted
+		ChunkScheduler scheduler = new ChunkScheduler(rules.size(), thread_count);
+		scheduler.setCancellationToken(token);
+		if(telemetry != null) telemetry.start_filter(scheduler);
+		
+		Runnable[] tasks = new Runnable[thread_count];
+		for(int i=0; i<thread_count; i++) tasks[i] = new FilterRuleThread_RuleMajor(this, rules, scheduler, i);
+		LearnerExecutor.invoke_all(executor, tasks, token);
+		
+		return scheduler.is_complete();
+	}
+	
+	/**
+	 * Call when the search finishes, no rule is added after that.
+	 * @return store of the selected rules
+	 */
+	public RuleStore finish(){
+		// The rule kept by an RTree for each body
+		Map<String, RuleInfo> body_rules = new HashMap<String, RuleInfo>(this.rule_store.size());
+		Set<RuleInfo> beaten_rules = Collections.newSetFromMap(new IdentityHashMap<RuleInfo, Boolean>());
+		for(RuleInfo rule : this.rule_store){
+			String key = Arrays.toString(rule.body);
+			RuleInfo kept_rule = body_rules.get(key);
+			if(kept_rule == null){
+				body_rules.put(key, rule);
+			}else if(RuleComparator.select_better_rule(kept_rule, rule) == rule){
+				body_rules.put(key, rule);
+				beaten_rules.add(kept_rule);
+			}else{
+				beaten_rules.add(rule);
+			}
+		}
+
+		CompiledRTree tree = null;
+		RuleStore filtered_rule_store = new RuleStore(body_rules.size());
+		for(int row=0; row<this.selectorID_records.length; row++){
+			RuleInfo best_rule = this.best_rules.get(row);
+			if(best_rule == null) continue;
+
+			if(beaten_rules.contains(best_rule)){
+				if(tree == null){
+					RTree rule_tree = new RTree();
+					for(RuleInfo rule : body_rules.values()) rule_tree.insert_rule_inverse_order(rule.body, rule);
+					tree = new CompiledRTree(rule_tree);
+				}
+				best_rule = tree.find_full_covering_rule(this.selectorID_records[row]);
+				this.best_rules.set(row, best_rule);
+				if(best_rule == null) continue;
+			}
+			filtered_rule_store.add(best_rule);
+		}
+
+		// Just for testing
+		StringBuilder sb = new StringBuilder(100);
+		sb.append("\tStreamingRuleFilter: ").append(this.rule_store.size()).append(" rules, ")
+		.append(beaten_rules.size()).append(" beaten by rules of the same bodies, ")
+		.append(filtered_rule_store.size()).append(" selected");
+		System.out.println(sb.toString());
+
+		return filtered_rule_store;
+	}
+
+	/**
+	 * @return the Nlist of the conjunction of the body and the head, its nodes are nodes of the deepest selector of the body
+	 * whose paths contain all the selectors and the class
+	 */
+	private INlist create_rule_nlist(RuleInfo rule){
+		INlist nlist = this.selector_nlists[rule.headID];
+		for(int i=rule.body.length-1; i>-1 && nlist.size() > 0; i--){
+			nlist = Supporter.create_nlist_conj(nlist, this.selector_nlists[rule.body[i]]);
+		}
+		return nlist;
+	}
+
+	/**
+	 * The order of FilterRuleThread: heuristic value, then p, then the first one in the traverse of the RTree,
+	 * i.e. the smaller body in the order of reversed bodies.
+	 * @return true if 'rule' is better than 'best_rule'
+	 */
+	private static boolean is_better(RuleInfo rule, RuleInfo best_rule){
+		if(rule.heuristic_value != best_rule.heuristic_value) return rule.heuristic_value > best_rule.heuristic_value;
+		if(rule.p != best_rule.p) return rule.p > best_rule.p;
+		return SortedNlistBuilder.REVERSED_RECORD_COMPARATOR.compare(rule.body, best_rule.body) < 0;
+	}
+}
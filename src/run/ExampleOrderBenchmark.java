@@ -0,0 +1,68 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package run;
+
+import rl.ExampleOrdering;
+import rl.ExampleOrdering.ORDER_TYPES;
+import rl.eg.Lord;
+import rl.eg.LordStar;
+import evaluations.HeuristicMetricFactory.METRIC_TYPES;
+
+/**
+ * Benchmark of the example orders (see ExampleOrdering) for LORD and LORD* on one training data file.
+ * </br>For each order it reports the learning time, the number of rules, the prefix reuse rate of consecutive examples
+ * (the share of body selectors on the same PPCTree path prefix as the previous example, i.e. the locality of Nlist work),
+ * and for LORD* the numbers of searched and skipped examples.
+ * </br>Usage: ExampleOrderBenchmark train_file [thread_count] [repeat_count]
+ */
+public class ExampleOrderBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1){
+			System.out.println("Usage: ExampleOrderBenchmark train_file [thread_count] [repeat_count]");
+			return;
+		}
+		int thread_count = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		int repeat_count = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+		Lord lord = new Lord();
+		LordStar lord_star = new LordStar();
+		if(thread_count > 0){
+			lord.setThreadCount(thread_count, true);
+			lord_star.setThreadCount(thread_count, true);
+		}
+		lord.fetch_information(args[0]);
+		lord_star.fetch_information(args[0]);
+
+		StringBuilder sb = new StringBuilder(1000);
+		sb.append("algorithm, order, learning time (ms), rule count, prefix reuse rate, searched examples, skipped examples\n");
+		int[][] records = lord.getSelectorIDRecords();
+		for(ORDER_TYPES order : ORDER_TYPES.values()){
+			double reuse_rate = ExampleOrdering.prefix_reuse_rate(
+									ExampleOrdering.get_order(order, records, lord.getSelectorNlist()), records);
+			
+			// LORD
+			lord.setExampleOrder(order);
+			long time = 0;
+			for(int i=0; i<repeat_count; i++) time += lord.learning(METRIC_TYPES.MESTIMATE, 0.1);
+			sb.append("LORD, ").append(order).append(", ").append(time/repeat_count).append(", ")
+			.append(lord.rm.ruleList.size()).append(", ")
+			.append(reuse_rate).append(", -, -\n");
+
+			// LORD*
+			lord_star.setExampleOrder(order);
+			time = 0;
+			for(int i=0; i<repeat_count; i++) time += lord_star.learning(METRIC_TYPES.MESTIMATE, 0.1);
+			sb.append("LORD*, ").append(order).append(", ").append(time/repeat_count).append(", ")
+			.append(lord_star.rm.ruleList.size()).append(", ")
+			.append(reuse_rate).append(", ")
+			.append(lord_star.getSearchedCount()).append(", ").append(lord_star.getSkippedCount()).append('\n');
+		}
+
+		System.out.println("---------------------------------------------------");
+		System.out.print(sb.toString());
+	}
+}
@@ -25,7 +25,6 @@ import java.util.zip.DataFormatException;
 
 import prepr.DataReader;
 import prepr.Selector;
-import rl.IntHolder;
 import rl.RuleInfo;
 import rl.eg.LordStar;
 import arg.ArgHelperIF;
@@ -243,21 +242,24 @@ public class LordStarRun {
 		
 		DataReader dr = DataReader.getDataReader(test_filename);
 		String[] value_record;
-		IntHolder predicted_classID = new IntHolder(-1);
-		int[] example_selectorIDs;
+		List<String[]> value_records = new ArrayList<String[]>();
 		
-		// Predict
-		List<Integer> y_true = new ArrayList<Integer>();
-		List<Integer> y_pred = new ArrayList<Integer>();
+		// Predict, in parallel chunks
 		long start = System.currentTimeMillis();
 		dr.bind_datasource(test_filename);
-		while((value_record = dr.next_record()) != null){
-			example_selectorIDs = alg.predict(value_record, predicted_classID);
-			y_pred.add(predicted_classID.value);
-			y_true.add(example_selectorIDs[example_selectorIDs.length-1]);
-		}
+		while((value_record = dr.next_record()) != null) value_records.add(value_record);
+		String[][] test_records = value_records.toArray(new String[value_records.size()][]);
+		int[] predicted_classIDs = alg.predict_batch(test_records);
 		long prediction_time = System.currentTimeMillis() - start;
 		
+		int[] target_IDs = alg.get_target_IDs(test_records);
+		List<Integer> y_true = new ArrayList<Integer>(test_records.length);
+		List<Integer> y_pred = new ArrayList<Integer>(test_records.length);
+		for(int i=0; i<test_records.length; i++){
+			y_true.add(target_IDs[i]);
+			y_pred.add(predicted_classIDs[i]);
+		}
+		
 		// Calculate performance measurements
 		ModelEvaluation me = new ModelEvaluation();
 		//me.fetch_prediction_result(y_true, y_pred, alg.getClassIDs());